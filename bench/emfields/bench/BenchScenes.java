@@ -0,0 +1,45 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class builds the scenes shared by the benchmarks. The charges are spread
+    at random over the middle of a 1000 by 1000 scene with a fixed seed, so
+    every run and every benchmark measures the same arrangement.
+*/
+
+package emfields.bench;
+
+import emfields.EMPhysics.ChargeStore;
+import java.awt.Dimension;
+import java.util.Random;
+
+final class BenchScenes {
+
+    //Size of the benchmark scene
+    static final int SIZE = 1000;
+
+    private BenchScenes() {
+    }
+
+    //Returns a store of the given number of charges, of both signs
+    static ChargeStore charges(int count) {
+        ChargeStore charges = new ChargeStore();
+        Random random = new Random(42);
+        for (int i = 0; i < count; i++) {
+            int charge = random.nextInt(9) + 1;
+            charges.add(200 + random.nextDouble() * 600, 200 + random.nextDouble() * 600,
+                    random.nextBoolean() ? charge : -charge);
+        }
+        return charges;
+    }
+
+    //Returns the corners of a regular polygon around the middle of the scene
+    static Dimension[] polygon(int vertices) {
+        Dimension[] corners = new Dimension[vertices];
+        for (int i = 0; i < vertices; i++) {
+            double angle = 2 * Math.PI * i / vertices;
+            corners[i] = new Dimension((int) Math.round(SIZE / 2 + 150 * Math.cos(angle)),
+                    (int) Math.round(SIZE / 2 + 150 * Math.sin(angle)));
+        }
+        return corners;
+    }
+}
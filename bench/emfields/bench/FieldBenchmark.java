@@ -0,0 +1,66 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class measures the field of a single vector, both summed over every
+    charge and updated after one charge was dragged.
+*/
+
+package emfields.bench;
+
+import emfields.EMObjects.EMVec;
+import emfields.EMPhysics.ChargeStore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int charges;
+
+    @Param({"false", "true"})
+    public boolean pointCharge;
+
+    private ChargeStore store;
+    private EMVec vector;       //Vector kept up to date with the store
+    private boolean moved;      //Flags which side the dragged charge is on
+
+    @Setup
+    public void setUp() {
+        store = BenchScenes.charges(charges);
+        vector = new EMVec(500.5, 500.5, store);
+        vector.updateMag(store, pointCharge);
+    }
+
+    //Sums the field of every charge at the vector
+    @Benchmark
+    public double full() {
+        EMVec fresh = new EMVec(500.5, 500.5, store);
+        fresh.updateMag(store, pointCharge);
+        return fresh.getMag();
+    }
+
+    //Updates the field after the first charge moved, as while dragging a rod
+    @Benchmark
+    public double afterMove() {
+        moved = !moved;
+        store.move(0, store.getX(0) + (moved ? 3 : -3), store.getY(0));
+        vector.updateMag(store, pointCharge);
+        return vector.getMag();
+    }
+}
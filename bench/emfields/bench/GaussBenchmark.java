@@ -0,0 +1,95 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class measures the flux through a gaussian surface. A surface is only
+    used with line charges, so there is no point charge mode to measure.
+*/
+
+package emfields.bench;
+
+import emfields.EMObjects.GaussSurface;
+import emfields.EMPhysics.ChargeStore;
+import java.awt.Dimension;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GaussBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int charges;
+
+    @Param({"4", "16", "64"})
+    public int vertices;
+
+    private ChargeStore store;
+    private Dimension[] corners;
+    private GaussSurface surface;   //Surface kept up to date with the store
+    private GaussSurface sampled;   //Surface which samples the field on its sides
+    private boolean moved;          //Flags which side the dragged charge is on
+
+    @Setup
+    public void setUp() {
+        store = BenchScenes.charges(charges);
+        corners = BenchScenes.polygon(vertices);
+        surface = build();
+        surface.update(store);
+        sampled = build();
+        sampled.setAnalytic(false);
+    }
+
+    //Places a surface on the corners and closes it
+    private GaussSurface build() {
+        GaussSurface built = new GaussSurface();
+        for (Dimension corner : corners) {
+            built.add(corner, store);
+        }
+        built.wrapUp(store);
+        return built;
+    }
+
+    //Places a surface corner by corner and closes it, as the mouse does
+    @Benchmark
+    public double create() {
+        return build().getTotFlux();
+    }
+
+    //Calculates the flux of every side from every charge
+    @Benchmark
+    public double fullUpdate() {
+        GaussSurface fresh = build();
+        fresh.update(store);
+        return fresh.getTotFlux();
+    }
+
+    //Updates the flux after the first charge moved, as while dragging a rod
+    @Benchmark
+    public double updateAfterMove() {
+        moved = !moved;
+        store.move(0, store.getX(0) + (moved ? 3 : -3), store.getY(0));
+        surface.update(store);
+        return surface.getTotFlux();
+    }
+
+    //Calculates the flux by sampling the field along every side
+    @Benchmark
+    public double sampledFlux() {
+        sampled.update(store);
+        return sampled.getTotFlux();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class measures full traces of a field line and of an equipotential line,
+    dropping the cached curve before every trace.
+*/
+
+package emfields.bench;
+
+import emfields.EMObjects.EquiLine;
+import emfields.EMObjects.FieldLine;
+import emfields.EMObjects.Polyline;
+import emfields.EMObjects.PolylineCache;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.SceneSnapshot;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LineBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int charges;
+
+    @Param({"false", "true"})
+    public boolean pointCharge;
+
+    private final PolylineCache cache = new PolylineCache(PolylineCache.DEFAULT_BUDGET);
+    private SceneSnapshot scene;
+    private FieldLine fieldLine;
+    private EquiLine equiLine;
+
+    @Setup
+    public void setUp() {
+        ChargeStore store = BenchScenes.charges(charges);
+        scene = new SceneSnapshot(store, BenchScenes.SIZE, BenchScenes.SIZE, pointCharge);
+        fieldLine = new FieldLine(520, 480, cache);
+        equiLine = new EquiLine(520, 480, store, cache);
+    }
+
+    //Traces a field line through the charges in both directions
+    @Benchmark
+    public Polyline fieldLine() {
+        cache.remove(fieldLine);
+        fieldLine.compute(scene);
+        return cache.get(fieldLine);
+    }
+
+    //Traces an equipotential line around the charges
+    @Benchmark
+    public Polyline equiLine() {
+        cache.remove(equiLine);
+        equiLine.compute(scene);
+        return cache.get(equiLine);
+    }
+}
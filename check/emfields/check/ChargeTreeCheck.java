@@ -0,0 +1,60 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class checks the multipole quadtree against the direct sum over every
+    charge. Random charges of both signs are spread over a scene, and at
+    random points the field from the tree, at its default opening angle, must
+    match the direct field to the relative error documented in ChargeTree.
+*/
+
+package emfields.check;
+
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.FieldKernel;
+import java.util.Random;
+
+final class ChargeTreeCheck {
+
+    //Largest relative error of the field allowed, as documented in ChargeTree
+    private static final double LINE_TOLERANCE = 2e-5;
+    private static final double POINT_TOLERANCE = 5e-5;
+
+    private static final int[] CHARGES = {3000, 20000};    //Sizes of the scenes checked
+    private static final int POINTS = 2000;                 //Points checked in each scene
+
+    private ChargeTreeCheck() {
+    }
+
+    static void run() {
+        Random random = new Random(7);
+        FieldKernel direct = new FieldKernel();
+        direct.setTreeThreshold(Integer.MAX_VALUE);
+        FieldKernel tree = new FieldKernel();
+        tree.setTreeThreshold(0);
+        for (int count : CHARGES) {
+            ChargeStore charges = new ChargeStore();
+            for (int i = 0; i < count; i++) {
+                int charge = random.nextInt(3) + 1;
+                charges.add(random.nextDouble() * 1000, random.nextDouble() * 900,
+                        random.nextBoolean() ? charge : -charge);
+            }
+            for (boolean pointCharge : new boolean[]{false, true}) {
+                double worst = 0;
+                for (int k = 0; k < POINTS; k++) {
+                    double xDim = random.nextDouble() * 1000;
+                    double yDim = random.nextDouble() * 900;
+                    direct.evaluate(charges, xDim, yDim, pointCharge);
+                    tree.evaluate(charges, xDim, yDim, pointCharge);
+                    double error = Math.hypot(tree.getEx() - direct.getEx(),
+                            tree.getEy() - direct.getEy())
+                            / Math.hypot(direct.getEx(), direct.getEy());
+                    worst = Math.max(worst, error);
+                }
+                double tolerance = pointCharge ? POINT_TOLERANCE : LINE_TOLERANCE;
+                Checks.require(worst <= tolerance, (pointCharge ? "Point" : "Line")
+                        + " charge field over " + count + " charges is off by " + worst);
+            }
+        }
+        System.out.println("ChargeTreeCheck: the tree matches the direct sums");
+    }
+}
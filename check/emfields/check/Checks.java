@@ -0,0 +1,29 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class runs the checks of the physics and the scene files, which compare
+    the fast paths against simple answers known to be right. Each check prints
+    its name once it passes, and the first to fail stops the run with an
+    error naming what went wrong.
+
+    ant check
+*/
+
+package emfields.check;
+
+public class Checks {
+
+    public static void main(String[] args) throws Exception {
+        ContourCheck.run();
+        ChargeTreeCheck.run();
+        SceneFileCheck.run();
+        System.out.println("All checks passed");
+    }
+
+    //Fails the running check with the message unless the condition holds
+    static void require(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class checks that marching squares joins the segments of a level into
+    closed loops. Around a single charge every equipotential is a circle, so
+    each level whose circle fits in the scene must come back as one closed
+    polyline in one piece, lying on that circle. The levels are chosen to
+    cross both the coarse cells and the refined cells near the charge.
+*/
+
+package emfields.check;
+
+import emfields.EMObjects.MarchingSquares;
+import emfields.EMObjects.Polyline;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.SceneSnapshot;
+import java.util.List;
+
+final class ContourCheck {
+
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final double CENTER_X = 403.3;   //Off the grid, so no level meets a point
+    private static final double CENTER_Y = 297.7;
+
+    //Radii of the circles checked, in pixels
+    private static final double[] RADII = {5, 9, 14, 25, 60, 120, 200, 280};
+
+    //Furthest a point of a loop may stray from its circle
+    private static final double TOLERANCE = 2;
+
+    private ContourCheck() {
+    }
+
+    static void run() {
+        for (boolean pointCharge : new boolean[]{false, true}) {
+            ChargeStore charges = new ChargeStore();
+            charges.add(CENTER_X, CENTER_Y, 3);
+            SceneSnapshot scene = new SceneSnapshot(charges, WIDTH, HEIGHT, pointCharge);
+            MarchingSquares grid = new MarchingSquares(0, 0);
+            Checks.require(grid.sample(scene), "Sampling was cancelled");
+            FieldKernel kernel = new FieldKernel();
+            for (double radius : RADII) {
+                double level = kernel.potential(charges, CENTER_X + radius, CENTER_Y, pointCharge);
+                List<Polyline> lines = grid.extract(new double[]{level}, scene);
+                String name = (pointCharge ? "point" : "line") + " charge, radius " + radius;
+                Checks.require(lines.size() == 1, name + ": " + lines.size() + " lines, not 1");
+                checkLoop(lines.get(0), radius, name);
+            }
+        }
+        System.out.println("ContourCheck: loops around a single charge are closed");
+    }
+
+    //Checks a polyline is one closed piece on the circle of the given radius
+    private static void checkLoop(Polyline line, double radius, String name) {
+        int last = line.size() - 1;
+        Checks.require(last >= 3, name + ": only " + line.size() + " points");
+        Checks.require(line.getX(0) == line.getX(last) && line.getY(0) == line.getY(last),
+                name + ": loop is not closed");
+        for (int i = 0; i <= last; i++) {
+            Checks.require(i == 0 || !line.startsPiece(i), name + ": loop breaks at point " + i);
+            double distance = Math.hypot(line.getX(i) - CENTER_X, line.getY(i) - CENTER_Y);
+            Checks.require(Math.abs(distance - radius) <= TOLERANCE,
+                    name + ": point " + i + " lies " + distance + " from the charge");
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class checks that a scene survives being written and read again in both
+    the binary and the text form, with every setting, rod and object intact,
+    and that both forms turn away a rod of no charge in the same way.
+*/
+
+package emfields.check;
+
+import emfields.SceneFile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+final class SceneFileCheck {
+
+    private SceneFileCheck() {
+    }
+
+    static void run() throws IOException {
+        SceneFile scene = new SceneFile();
+        scene.width = 1024;
+        scene.height = 768;
+        scene.pointCharge = true;
+        scene.grid = true;
+        scene.latticeSpacing = 40;
+        scene.potentialMap = true;
+        scene.contourLevels = 12;
+        scene.streamlines = true;
+        scene.addRod(3, 400, 300);
+        scene.addRod(-1.25, 612.5, 333.75);
+        scene.addRod(1e-3, .1, 767.9);
+        scene.objects.add(new int[]{SceneFile.VECTOR, 500, 300});
+        scene.objects.add(new int[]{SceneFile.FIELD_LINE, 420, 310});
+        scene.objects.add(new int[]{SceneFile.EQUI_LINE, 450, 250});
+        scene.objects.add(new int[]{SceneFile.GAUSS, 560, 360, 640, 360, 640, 440, 560, 440});
+
+        Path dir = Files.createTempDirectory("scenes");
+        try {
+            Path binary = dir.resolve("round.emfs");
+            scene.write(binary);
+            compare(scene, SceneFile.read(binary), "binary");
+            Path text = dir.resolve("round.scene");
+            scene.writeText(text);
+            compare(scene, SceneFile.read(text), "text");
+
+            //A rod of no charge, written directly into each form
+            Path zeroText = dir.resolve("zero.scene");
+            Files.write(zeroText, Arrays.asList("rod 0 400 300"));
+            rejects(zeroText, "text");
+            byte[] bytes = Files.readAllBytes(binary);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int rods = scene.getRodCount();
+            buffer.putDouble(40 + 8 * 2 * rods, 0);
+            Path zeroBinary = dir.resolve("zero.emfs");
+            Files.write(zeroBinary, bytes);
+            rejects(zeroBinary, "binary");
+        } finally {
+            for (String name : new String[]{"round.emfs", "round.scene", "zero.scene", "zero.emfs"}) {
+                Files.deleteIfExists(dir.resolve(name));
+            }
+            Files.delete(dir);
+        }
+        System.out.println("SceneFileCheck: scenes round-trip in both forms");
+    }
+
+    //Checks a scene read back holds everything that was written
+    private static void compare(SceneFile expected, SceneFile actual, String form) {
+        Checks.require(actual.width == expected.width && actual.height == expected.height,
+                form + ": size changed");
+        Checks.require(actual.pointCharge == expected.pointCharge && actual.grid == expected.grid
+                && actual.potentialMap == expected.potentialMap
+                && actual.streamlines == expected.streamlines, form + ": flags changed");
+        Checks.require(actual.latticeSpacing == expected.latticeSpacing
+                && actual.contourLevels == expected.contourLevels, form + ": views changed");
+        Checks.require(actual.getRodCount() == expected.getRodCount(), form + ": rod count changed");
+        for (int i = 0; i < expected.getRodCount(); i++) {
+            Checks.require(actual.getRodCharge(i) == expected.getRodCharge(i)
+                    && actual.getRodX(i) == expected.getRodX(i)
+                    && actual.getRodY(i) == expected.getRodY(i), form + ": rod " + i + " changed");
+        }
+        Checks.require(actual.objects.size() == expected.objects.size(),
+                form + ": object count changed");
+        for (int i = 0; i < expected.objects.size(); i++) {
+            Checks.require(Arrays.equals(actual.objects.get(i), expected.objects.get(i)),
+                    form + ": object " + i + " changed");
+        }
+    }
+
+    //Checks reading a file fails
+    private static void rejects(Path path, String form) {
+        try {
+            SceneFile.read(path);
+        } catch (IOException e) {
+            return;
+        }
+        throw new AssertionError(form + ": a rod of no charge was accepted");
+    }
+}
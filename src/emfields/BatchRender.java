@@ -0,0 +1,194 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class renders scene files to PNG images without opening a window, so
+    figures can be made again in a batch instead of by hand. Every scene is
+    computed and drawn by the same objects as the EMPanel, leaving the areas
+    of its menus clear as the window does, and the scenes are spread across
+    the cores of the machine.
+
+    java -cp build/classes emfields.BatchRender [-o dir] [-j threads] [-a] scene...
+
+    Each scene is written to the output directory with its name ending in
+    .png; a directory given as a scene stands for every .scene and .emfs
+    file in it. Scenes may be in either the text or the binary form. The -a
+    flag draws the traced lines antialiased.
+*/
+
+package emfields;
+
+import emfields.EMObjects.ContourSet;
+import emfields.EMObjects.EMObj;
+import emfields.EMObjects.EMRod;
+import emfields.EMObjects.PolylineCache;
+import emfields.EMObjects.PotentialMap;
+import emfields.EMObjects.StreamlineSet;
+import emfields.EMObjects.VectorLattice;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+public class BatchRender {
+
+    //Matches the look of the EMPanel
+    private static final Color BACKGROUND = new Color(245, 245, 250);
+
+    //Renders every scene named on the command line
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        Path output = Paths.get(".");
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean antialiased = false;
+        ArrayList<Path> scenes = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("-o") && i + 1 < args.length) {
+                    output = Paths.get(args[++i]);
+                } else if (args[i].equals("-j") && i + 1 < args.length) {
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                } else if (args[i].equals("-a")) {
+                    antialiased = true;
+                } else if (Files.isDirectory(Paths.get(args[i]))) {
+                    try (DirectoryStream<Path> dir
+                            = Files.newDirectoryStream(Paths.get(args[i]), "*.{scene,emfs}")) {
+                        for (Path path : dir) {
+                            scenes.add(path);
+                        }
+                    }
+                } else {
+                    scenes.add(Paths.get(args[i]));
+                }
+            }
+            Files.createDirectories(output);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+        if (scenes.isEmpty()) {
+            System.err.println("Usage: BatchRender [-o dir] [-j threads] [-a] scene...");
+            System.exit(2);
+        }
+
+        //Renders the scenes in parallel, reporting each one in order
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, scenes.size()));
+        ArrayList<Future<Path>> results = new ArrayList<>();
+        for (Path scene : scenes) {
+            results.add(pool.submit(new RenderJob(scene, output, antialiased)));
+        }
+        int failed = 0;
+        for (int i = 0; i < scenes.size(); i++) {
+            try {
+                System.out.println(scenes.get(i) + " -> " + results.get(i).get());
+            } catch (ExecutionException e) {
+                System.err.println(scenes.get(i) + ": " + e.getCause().getMessage());
+                failed++;
+            }
+        }
+        pool.shutdown();
+        System.exit(failed > 0 ? 1 : 0);
+    }
+
+    //Reads, renders and writes a single scene
+    private static class RenderJob implements Callable<Path> {
+
+        private final Path scene;
+        private final Path output;
+        private final boolean antialiased;
+
+        private RenderJob(Path scene, Path output, boolean antialiased) {
+            this.scene = scene;
+            this.output = output;
+            this.antialiased = antialiased;
+        }
+
+        @Override
+        public Path call() throws IOException {
+            BufferedImage image = render(SceneFile.read(scene), antialiased);
+            String name = scene.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            Path target = output.resolve((dot > 0 ? name.substring(0, dot) : name) + ".png");
+            ImageIO.write(image, "png", target.toFile());
+            return target;
+        }
+    }
+
+    //Draws a scene in the same order as the layers of the EMPanel
+    public static BufferedImage render(SceneFile file) {
+        return render(file, false);
+    }
+
+    //Draws a scene, with the traced lines antialiased if asked
+    public static BufferedImage render(SceneFile file, boolean antialiased) {
+        int top = EMPanel.TOP_MENU_Y;
+        int bottom = EMPanel.BOTTOM_MENU_Y;
+        BufferedImage image = new BufferedImage(file.width, file.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(BACKGROUND);
+        g.fillRect(0, 0, file.width, file.height);
+        if (file.grid) {
+            g.setColor(Color.black);
+            EMPanel.paintGrid(g, file.width, file.height);
+        }
+
+        if (antialiased) {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        }
+
+        ChargeStore charges = file.createCharges();
+        SceneSnapshot scene = new SceneSnapshot(charges, file.width, file.height, top, bottom,
+                file.pointCharge, false);
+        PolylineCache cache = new PolylineCache(PolylineCache.DEFAULT_BUDGET);
+        if (file.potentialMap) {
+            draw(new PotentialMap(top, bottom), g, scene, cache);
+        }
+        if (file.contourLevels > 0) {
+            draw(new ContourSet(file.contourLevels, top, bottom), g, scene, cache);
+        }
+        if (file.streamlines) {
+            draw(new StreamlineSet(StreamlineSet.DEFAULT_SEPARATION, true, top, bottom), g, scene,
+                    cache);
+        }
+        if (file.latticeSpacing > 0) {
+            draw(new VectorLattice(file.latticeSpacing, top, bottom), g, scene, cache);
+        }
+        ArrayList<EMObj> objects = file.createObjects(charges, cache);
+        cache.retain(objects);
+        for (EMObj object : objects) {
+            draw(object, g, scene, cache);
+        }
+        for (int i = 0; i < file.getRodCount(); i++) {
+            new EMRod(file.getRodCharge(i), file.getRodX(i), file.getRodY(i)).paintRods(g);
+        }
+        g.dispose();
+        return image;
+    }
+
+    //Computes and draws an object. Its traced curve waits in the cache of this
+    //    scene alone, which never drops the curve it has just stored, so it
+    //    is drawn before it is freed.
+    private static void draw(EMObj object, Graphics2D g, SceneSnapshot scene,
+            PolylineCache cache) {
+        object.compute(scene);
+        if (object.isStale(scene)) {
+            throw new IllegalStateException("Could not compute " + object.getType());
+        }
+        object.paintObj(g, scene);
+        cache.remove(object);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class runs the calculations of every object on the screen away from the
+    Swing event thread. Each time the scene changes, the job for the previous
+    scene is cancelled and every object is computed for the new snapshot in
+    parallel on a ForkJoinPool. Every panel shares one pool, so opening more
+    windows does not add more worker threads. The panel is asked to repaint as results come
+    in, and always draws whatever was last finished.
+*/
+
+package emfields;
+
+import emfields.EMObjects.EMObj;
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ComputeScheduler {
+
+    //Pool using every processor, shared by the schedulers of all panels
+    private static final ForkJoinPool SHARED = new ForkJoinPool();
+
+    private final ForkJoinPool pool;    //Workers which compute the objects
+    private final Component target;     //Component repainted as results finish
+
+    private SceneSnapshot scene;    //Scene of the current job
+    private ForkJoinTask<?> job;    //Job computing the current scene
+    private final AtomicInteger published = new AtomicInteger();    //Count of results published
+    private volatile FrameStats stats;  //Measures every compute, or null
+
+    //Initializes the scheduler with the pool shared by every panel
+    public ComputeScheduler(Component target) {
+        this(target, SHARED);
+    }
+
+    //Initializes the scheduler with the given pool
+    public ComputeScheduler(Component target, ForkJoinPool pool) {
+        this.target = target;
+        this.pool = pool;
+    }
+
+    //Starts computing the objects for a new scene, cancelling the old job
+    public synchronized void schedule(SceneSnapshot scene, List<EMObj> objects) {
+        if (this.scene != null) {
+            this.scene.cancel();
+        }
+        if (job != null) {
+            job.cancel(false);
+        }
+        this.scene = scene;
+
+        final ArrayList<EMObj> work = new ArrayList<>(objects);
+        job = pool.submit(new RecursiveAction() {
+
+            @Override
+            protected void compute() {
+                ArrayList<RecursiveAction> tasks = new ArrayList<>();
+                for (EMObj object : work) {
+                    tasks.add(new ObjectTask(object, scene));
+                }
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    //Sets where every compute is measured, or null to stop measuring
+    public void setStats(FrameStats stats) {
+        this.stats = stats;
+    }
+
+    //Returns whether the last job has finished or been cancelled
+    public synchronized boolean isIdle() {
+        return job == null || job.isDone();
+    }
+
+    //Returns a count which changes every time an object publishes new results
+    public int getPublished() {
+        return published.get();
+    }
+
+    //Marks that an object has new results and asks for a repaint
+    public void publish() {
+        published.incrementAndGet();
+        target.repaint();
+    }
+
+    //Blocks until the last job has finished, for use outside of the Swing thread
+    public void await() {
+        ForkJoinTask<?> current;
+        synchronized (this) {
+            current = job;
+        }
+        if (current != null && !current.isCancelled()) {
+            current.join();
+        }
+    }
+
+    //Cancels the current job and stops the workers
+    public synchronized void shutdown() {
+        if (scene != null) {
+            scene.cancel();
+        }
+        pool.shutdownNow();
+    }
+
+    //Computes a single object, then asks for a repaint
+    private class ObjectTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final EMObj object;
+        private final SceneSnapshot scene;
+
+        private ObjectTask(EMObj object, SceneSnapshot scene) {
+            this.object = object;
+            this.scene = scene;
+        }
+
+        @Override
+        protected void compute() {
+            if (!scene.isCancelled()) {
+                FrameStats measured = stats;
+                if (measured != null) {
+                    long bytes = FrameStats.allocatedBytes();
+                    long start = System.nanoTime();
+                    object.compute(scene);
+                    measured.computed(object, start, bytes);
+                } else {
+                    object.compute(scene);
+                }
+                if (!scene.isCancelled()) {
+                    publish();
+                }
+            }
+        }
+    }
+}
@@ -9,8 +9,8 @@ This class extends the JLabel class, yet acts as a button. Its specific purpose
 */
 package emfields;
 
+import emfields.EMObjects.RenderResources;
 import java.awt.Color;
-import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -50,7 +50,7 @@ public class EMButton extends JLabel {
             public void mouseEntered(MouseEvent e) {
                 super.mouseEntered(e);
 
-                setCursor(new Cursor(Cursor.HAND_CURSOR));
+                setCursor(RenderResources.HAND_CURSOR);
                 setIcon(chromo);
             }
 
@@ -61,7 +61,7 @@ public class EMButton extends JLabel {
                 if (parent.mouseFunc != mouseFunc) {
                     setIcon(mono);
                 }
-                setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
+                setCursor(RenderResources.DEFAULT_CURSOR);
                 mouseClicked = true;
             }
 
@@ -14,13 +14,17 @@ import java.awt.Dimension;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
 import java.util.ArrayList;
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JCheckBox;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 public class EMMenu extends JPanel {
 
@@ -50,25 +54,46 @@ public class EMMenu extends JPanel {
     public EMMenu(EMPanel parent) {
         this.parent = parent;
         
-        setPreferredSize(new Dimension(137 * 6, 75));
+        setPreferredSize(new Dimension(137 * 7, 75));
         setBackground(new Color(204, 210, 227));
-        setLayout(new GridLayout(1, 6));
+        setLayout(new GridLayout(1, 7));
         this.setBorder(BorderFactory.createEmptyBorder(0,
-                (parent.getPreferredSize().width - 137 * 6) / 2, 0,
-                (parent.getPreferredSize().width - 137 * 6) / 2));
+                (parent.getPreferredSize().width - 137 * 7) / 2, 0,
+                (parent.getPreferredSize().width - 137 * 7) / 2));
 
         JButton undo = new JButton("Undo");
+        JButton save = new JButton("Save");
+        JButton load = new JButton("Load");
         
         JCheckBox threeD = new JCheckBox("Point Charges");
         JCheckBox grid = new JCheckBox("Grid");
         JCheckBox coordinates = new JCheckBox("Coordinates");
+        JCheckBox smooth = new JCheckBox("Smooth Lines");
+        JCheckBox lattice = new JCheckBox("Vector Grid");
+        JCheckBox potential = new JCheckBox("Potential Map");
+        JCheckBox contours = new JCheckBox("Contours");
+        JCheckBox streamlines = new JCheckBox("Field Diagram");
         
+        JPanel edits = new JPanel();
         JPanel checkBoxes = new JPanel();
+        JPanel views = new JPanel();
         
-        checkBoxes.setLayout(new GridLayout(3, 0));
+        edits.setLayout(new GridLayout(3, 0));
+        edits.add(undo);
+        edits.add(save);
+        edits.add(load);
+        
+        checkBoxes.setLayout(new GridLayout(4, 0));
         checkBoxes.add(coordinates);
         checkBoxes.add(grid);
         checkBoxes.add(threeD);
+        checkBoxes.add(smooth);
+        
+        views.setLayout(new GridLayout(4, 0));
+        views.add(lattice);
+        views.add(potential);
+        views.add(contours);
+        views.add(streamlines);
         
         buttons = new ArrayList<>();
 
@@ -80,8 +105,9 @@ public class EMMenu extends JPanel {
         for (int i = 0; i < 4; i++) {
             add(buttons.get(i));
         }
-        add(undo);
+        add(edits);
         add(checkBoxes);
+        add(views);
 
         grid.addActionListener(new AbstractAction() {
 
@@ -99,6 +125,44 @@ public class EMMenu extends JPanel {
             }
         });
 
+        save.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser chooser = createChooser();
+                if (chooser.showSaveDialog(parent) == JFileChooser.APPROVE_OPTION) {
+                    try {
+                        parent.saveScene(chooser.getSelectedFile().toPath());
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(parent, ex.getMessage(),
+                                "Could not save the scene", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        });
+
+        load.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser chooser = createChooser();
+                if (chooser.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+                    try {
+                        parent.loadScene(chooser.getSelectedFile().toPath());
+                        threeD.setSelected(parent.isPointCharge());
+                        grid.setSelected(parent.isGrid());
+                        lattice.setSelected(parent.isVectorLattice());
+                        potential.setSelected(parent.isPotentialMap());
+                        contours.setSelected(parent.isContours());
+                        streamlines.setSelected(parent.isStreamlines());
+                    } catch (IOException ex) {
+                        JOptionPane.showMessageDialog(parent, ex.getMessage(),
+                                "Could not load the scene", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        });
+
         threeD.addActionListener(new AbstractAction() {
 
             @Override
@@ -108,6 +172,42 @@ public class EMMenu extends JPanel {
 
         });
 
+        lattice.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                parent.setVectorLattice(lattice.isSelected());
+            }
+
+        });
+
+        potential.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                parent.setPotentialMap(potential.isSelected());
+            }
+
+        });
+
+        contours.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                parent.setContours(contours.isSelected());
+            }
+
+        });
+
+        streamlines.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                parent.setStreamlines(streamlines.isSelected());
+            }
+
+        });
+
         coordinates.addActionListener(new AbstractAction() {
 
             @Override
@@ -116,6 +216,23 @@ public class EMMenu extends JPanel {
             }
 
         });
+
+        smooth.addActionListener(new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                parent.setAntialiased(smooth.isSelected());
+            }
+
+        });
+    }
+
+    //Creates a file chooser for saved scenes; names ending in .scene are
+    //    saved as editable text, others in the compact binary form
+    private JFileChooser createChooser() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new FileNameExtensionFilter("Scenes (.emfs, .scene)", "emfs", "scene"));
+        return chooser;
     }
 
     public void setFunc(int mouseFunc, MouseEvent e) {
@@ -129,7 +246,7 @@ public class EMMenu extends JPanel {
     }
 
     public void resetBorder() {
-        this.setBorder(BorderFactory.createEmptyBorder(0, (parent.getWidth() - 137 * 6) / 2, 0, (parent.getWidth() - 137 * 6) / 2));
+        this.setBorder(BorderFactory.createEmptyBorder(0, (parent.getWidth() - 137 * 7) / 2, 0, (parent.getWidth() - 137 * 7) / 2));
     }
 
     public int getFunc() {
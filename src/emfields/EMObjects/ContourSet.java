@@ -0,0 +1,131 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class draws many evenly spaced Equipotential Lines at once. Instead of
+    tracing each line from a starting point like EquiLine, the potential is
+    sampled once on a grid and every level is pulled out of the same samples
+    by MarchingSquares.
+*/
+
+package emfields.EMObjects;
+
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.Collections;
+import java.util.List;
+
+public class ContourSet extends EMObj {
+
+    public static final int DEFAULT_LEVELS = 20;    //Default number of levels
+    public final double COLOR_CONST = 2.75;         //Determines color gradient
+
+    //Room kept clear around each label, so crowded lines are not all labelled
+    private static final int LABEL_WIDTH = 48;
+    private static final int LABEL_HEIGHT = 16;
+
+    private final int levels;   //Number of levels drawn
+    private final int top;      //Height of the area above the lines
+    private final int bottom;   //Height of the area below the lines
+
+    private volatile List<Polyline> lines = Collections.emptyList();  //Last finished lines
+    private volatile PolylineBatch batch;       //Every segment of the lines, by color
+    private volatile boolean computed = false;  //Flags if any lines have been finished
+
+    //Initializes a set of levels covering the panel apart from the top and bottom menus
+    public ContourSet(int levels, int top, int bottom) {
+        this.levels = Math.max(1, levels);
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    //Samples the potential and pulls out every level for the scene
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        this.pointCharge = scene.isPointCharge();
+        MarchingSquares grid = new MarchingSquares(top, bottom);
+        if (!grid.sample(scene)) {
+            return;
+        }
+        List<Polyline> found = grid.extract(grid.levels(levels), scene);
+        if (found != null) {
+            spreadLabels(found, scene.getWidth(), scene.getHeight());
+            batch = new PolylineBatch(found, COLOR_CONST);
+            lines = found;
+            computed = true;
+        }
+    }
+
+    //Removes the labels which would overlap a label placed before them
+    private static void spreadLabels(List<Polyline> lines, int width, int height) {
+        int cols = width / LABEL_WIDTH + 2;
+        int rows = height / LABEL_HEIGHT + 2;
+        boolean[] taken = new boolean[cols * rows];
+        for (Polyline line : lines) {
+            if (Float.isNaN(line.getLabelX())) {
+                continue;
+            }
+            int col = (int) line.getLabelX() / LABEL_WIDTH;
+            int row = (int) line.getLabelY() / LABEL_HEIGHT;
+            if (col < 0 || row < 0 || col >= cols || row >= rows) {
+                line.setLabelPosition(Float.NaN, Float.NaN);
+                continue;
+            }
+            boolean clear = true;
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                    clear &= !taken[r * cols + c];
+                }
+            }
+            if (clear) {
+                taken[row * cols + col] = true;
+            } else {
+                line.setLabelPosition(Float.NaN, Float.NaN);
+            }
+        }
+    }
+
+    //Checks if no lines have been finished yet
+    @Override
+    public boolean isStale(SceneSnapshot scene) {
+        return !computed;
+    }
+
+    //Draws every line of the last finished set with its potential
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        List<Polyline> lines = this.lines;
+        PolylineBatch batch = this.batch;
+        if (batch != null) {
+            batch.paint(g);
+        }
+        g.setColor(Color.black);
+        g.setFont(RenderResources.LABEL_FONT);
+        for (Polyline line : lines) {
+            if (!Float.isNaN(line.getLabelX())) {
+                g.drawString(line.getLabelText(), (int) line.getLabelX() + 4,
+                        (int) line.getLabelY() - 4);
+            }
+        }
+    }
+
+    //Returns the number of levels drawn
+    public int getLevels() {
+        return levels;
+    }
+
+    //Returns the number of lines in the last finished set
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    @Override
+    public String getType() {
+        return "ContourSet";
+    }
+
+    @Override
+    public int[] getDim() {
+        return new int[]{0, top, levels, bottom};
+    }
+}
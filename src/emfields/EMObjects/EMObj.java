@@ -8,15 +8,42 @@ This abstract class defines what every object the user interacts with must have.
 */
 package emfields.EMObjects;
 
+import emfields.EMPhysics.SceneSnapshot;
 import java.awt.Graphics;
-import java.util.ArrayList;
 
 public abstract class EMObj {
 
     boolean pointCharge = false;
 
-    abstract public void paintObj(Graphics g, ArrayList<EMRod> rods, int width,
-            int height, boolean pointCharge);
+    //Calculates what the object needs in order to be drawn in the scene. This
+    //    runs on a worker thread and should stop early once the scene is cancelled.
+    abstract public void compute(SceneSnapshot scene);
+
+    //Draws the results of the last finished compute, without calculating
+    abstract public void paintObj(Graphics g, SceneSnapshot scene);
+
+    //Checks if the object has no up to date results for the scene
+    public boolean isStale(SceneSnapshot scene) {
+        return false;
+    }
+
+    //Returns the points of the shape last drawn, for finding the object under
+    //    the mouse, or null if nothing has been drawn. A new shape is a new
+    //    Polyline or one with more points.
+    public Polyline getOutline() {
+        return null;
+    }
+
+    //Returns the number of field evaluations made by the last compute
+    public long getEvaluations() {
+        return 0;
+    }
+
+    //Returns the number of steps taken by the last compute, such as the
+    //    integration steps of a traced line
+    public long getSteps() {
+        return 0;
+    }
 
     abstract public String getType();
 
@@ -9,79 +9,65 @@ This class holds the graphical and numerical data for a charged rod.
 
 package emfields.EMObjects;
 
-import java.awt.BasicStroke;
-import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics;
-import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 
 public class EMRod {
 
-    //Numerical data concerning the rod
-    private final int charge;   //Charge value of the rod
-    private int xDim;           //Position of the rod
-    private int yDim;           //Position of the rod
+    //Numerical data concerning the rod, kept exactly as the charges of the
+    //    field are, even when a loaded scene gives fractional values
+    private final double charge;    //Charge value of the rod
+    private double xDim;            //Position of the rod
+    private double yDim;            //Position of the rod
+
+    //Image the rod was last drawn from, and the device scale it was made for
+    private BufferedImage sprite;
+    private double spriteScale;
 
     //Initializes the EMRod variables
-    public EMRod(int charge, int xDim, int yDim) {
+    public EMRod(double charge, double xDim, double yDim) {
         this.charge = charge;
         this.xDim = xDim;
         this.yDim = yDim;
     }
 
-    //Draws the EMRods
+    //Draws the EMRods, copying the image drawn once for their charge at the
+    //    scale of the device, so they stay sharp on high density displays
     public void paintRods(Graphics g) {
-        Graphics2D g2 = (Graphics2D) g;
-        if (charge > 0) {
-            g.setColor(new Color(92, 145, 255));
-        } else {
-            g.setColor(new Color(255, 140, 140));
-        }
-        g.fillOval(xDim - 10, yDim - 10, 20, 20);
-        g2.setStroke(new BasicStroke((float) 1.5));
-        if (charge > 0) {
-            g.setColor(new Color(72, 125, 235));
-            g.drawOval(xDim - 8, yDim - 8, 16, 16);
-            g.setColor(new Color(52, 105, 215));
-            g.drawOval(xDim - 9, yDim - 9, 18, 18);
-            g.setColor(new Color(32, 85, 195));
-            g.drawOval(xDim - 10, yDim - 10, 20, 20);
-        } else {
-            g.setColor(new Color(235, 120, 120));
-            g.drawOval(xDim - 8, yDim - 8, 16, 16);
-            g.setColor(new Color(215, 100, 100));
-            g.drawOval(xDim - 9, yDim - 9, 18, 18);
-            g.setColor(new Color(195, 80, 80));
-            g.drawOval(xDim - 10, yDim - 10, 20, 20);
+        double scale = RenderResources.deviceScale(g);
+        if (sprite == null || spriteScale != scale) {
+            sprite = RenderResources.rodSprite(charge, scale);
+            spriteScale = scale;
         }
-        g.setColor(Color.black);
-        g.setFont(new Font("default", Font.BOLD, 12));
+        int size = 2 * RenderResources.ROD_RADIUS;
+        g.drawImage(sprite, (int) Math.round(xDim) - RenderResources.ROD_RADIUS,
+                (int) Math.round(yDim) - RenderResources.ROD_RADIUS, size, size, null);
+    }
 
-        if (charge < 0) {
-            g.drawString(Integer.toString(charge), xDim - 5, yDim + 5);
-        } else {
-            g.drawString(Integer.toString(charge), xDim - 3, yDim + 5);
-        }
+    //Returns the area the rod is drawn in
+    public Rectangle getBounds() {
+        return new Rectangle((int) Math.round(xDim) - 12, (int) Math.round(yDim) - 12, 24, 24);
     }
 
     //Sets the coordinates of a rod
-    public void setDim(int xDim, int yDim) {
+    public void setDim(double xDim, double yDim) {
         this.xDim = xDim;
         this.yDim = yDim;
     }
 
     //Returns the charge of the rod
-    public int getCharge() {
+    public double getCharge() {
         return charge;
     }
 
     //Returns the x dimension of the rod
-    public int getxDim() {
+    public double getxDim() {
         return xDim;
     }
 
     //Returns the y dimension of the rod
-    public int getyDim() {
+    public double getyDim() {
         return yDim;
     }
 
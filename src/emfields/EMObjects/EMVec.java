@@ -12,9 +12,13 @@ This class extends the EMObj abstract class. This class is the basis of the
 package emfields.EMObjects;
 
 import emfields.EMPanel;
+import emfields.EMPhysics.ChargeListener;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.SceneSnapshot;
 import java.awt.Color;
 import java.awt.Graphics;
-import java.util.ArrayList;
+import java.awt.Rectangle;
 
 public class EMVec extends EMObj {
 
@@ -22,31 +26,64 @@ public class EMVec extends EMObj {
     private double xDim;
     private double yDim;
     
-    //Stores the different charge magnitude contributions
-    private double[][] standMag;
+    //Evaluates the field of the charges at the vector location
+    private final FieldKernel kernel = new FieldKernel();
     
     //Stores the vector's magnitudes
-    private double xMag;
-    private double yMag;
+    private volatile double xMag;
+    private volatile double yMag;
     
     //Stores the vector's parent
     private EMPanel parent = null;
 
-    //Acts as the electromagnetic constant
-    private final double K = 1000;
+    //Anchor point, for finding the vector under the mouse
+    private Polyline outline;
+    
+    //Describes the charges the magnitudes were last calculated for
+    private int version = -1;
+    private boolean magPoint;
+    private int deltas = 0;     //Charge changes applied since the full sum
+    private long evaluations;   //Field evaluations made by the last update
+    
+    //Number of charge changes applied before the field is summed from scratch
+    private static final int RESYNC_DELTAS = 256;
+    
+    //Applies the changes to single charges to the field at the vector
+    private final ChargeListener deltaUpdater = new ChargeListener() {
+
+        @Override
+        public void chargeAdded(int index, double xDim, double yDim, double charge) {
+            kernel.accumulate(xDim, yDim, charge, EMVec.this.xDim, EMVec.this.yDim, 1, pointCharge);
+            deltas++;
+        }
+
+        @Override
+        public void chargeMoved(int index, double xOld, double yOld, double xDim,
+                double yDim, double charge) {
+            kernel.accumulate(xOld, yOld, charge, EMVec.this.xDim, EMVec.this.yDim, -1, pointCharge);
+            kernel.accumulate(xDim, yDim, charge, EMVec.this.xDim, EMVec.this.yDim, 1, pointCharge);
+            deltas++;
+        }
+
+        @Override
+        public void chargeRemoved(int index, double xDim, double yDim, double charge) {
+            kernel.accumulate(xDim, yDim, charge, EMVec.this.xDim, EMVec.this.yDim, -1, pointCharge);
+            deltas++;
+        }
+    };
 
     //Initializes the vector
-    public EMVec(int xDim, int yDim, ArrayList rods) {
+    public EMVec(int xDim, int yDim, ChargeStore charges) {
         this.xDim = xDim;
         this.yDim = yDim;
-        updateMag(rods, pointCharge);
+        updateMag(charges, pointCharge);
     }
 
     //Initializes the vector
-    public EMVec(double xDim, double yDim, ArrayList rods) {
+    public EMVec(double xDim, double yDim, ChargeStore charges) {
         this.xDim = xDim;
         this.yDim = yDim;
-        updateMag(rods, pointCharge);
+        updateMag(charges, pointCharge);
     }
 
     //Initializes the vector
@@ -56,79 +93,91 @@ public class EMVec extends EMObj {
     }
 
     //Initializes the vector
-    public EMVec(int xDim, int yDim, ArrayList rods, EMPanel parent) {
+    public EMVec(int xDim, int yDim, ChargeStore charges, EMPanel parent) {
         this.xDim = xDim;
         this.yDim = yDim;
         this.parent = parent;
-        updateMag(rods, pointCharge);
+        updateMag(charges, pointCharge);
     }
 
-    //Initializes the vector
-    public void updateMag(ArrayList rods, boolean pointCharge) {
+    //Calculates the field at the vector location. When only a few charges
+    //    changed since the last call, their old contributions are taken away
+    //    and their new ones added instead of summing over every charge.
+    public synchronized void updateMag(ChargeStore charges, boolean pointCharge) {
+        long before = kernel.getEvaluations();
+        boolean full = version == -1 || magPoint != pointCharge || deltas >= RESYNC_DELTAS;
         this.pointCharge = pointCharge;
-        calcStand(rods);
-        xMag = calcXMag(standMag);
-        yMag = calcYMag(standMag);
-    }
-
-    //Calculates the different magnitude contributions of each charge
-    private void calcStand(ArrayList<EMRod> rods) {
-        standMag = new double[3][rods.size()];
-
-        for (int i = 18; i < rods.size(); i++) {
-            EMRod charge = rods.get(i);
-            double xDif = (charge.getxDim() - xDim);
-            double yDif = (charge.getyDim() - yDim);
-            double distSq = xDif * xDif + yDif * yDif;
-            standMag[0][i - 18] = calcField(charge, distSq) / Math.sqrt(distSq);
-            standMag[1][i - 18] = xDif;
-            standMag[2][i - 18] = yDif;
+        if (full || !charges.replay(version, deltaUpdater)
+                || Double.isNaN(kernel.getEx()) || Double.isInfinite(kernel.getEx())
+                || Double.isNaN(kernel.getEy()) || Double.isInfinite(kernel.getEy())) {
+            kernel.evaluateField(charges, xDim, yDim, pointCharge);
+            deltas = 0;
         }
+        version = charges.getVersion();
+        magPoint = pointCharge;
+        xMag = kernel.getEx();
+        yMag = kernel.getEy();
+        evaluations = kernel.getEvaluations() - before;
     }
 
-    //Calculates the total x-magnitude of the vector
-    private double calcXMag(double[][] standard) {
-        double finalMag = 0;
-        for (int i = 0; i < standard[0].length; i++) {
-            finalMag += standard[0][i] * standard[1][i];
-        }
-        return finalMag;
+    //Returns the number of field evaluations made by the last update
+    @Override
+    public long getEvaluations() {
+        return evaluations;
     }
 
-    //Calculates the total y-magnitude of the vector
-    private double calcYMag(double[][] standard) {
-        double finalMag = 0;
-        for (int i = 0; i < standard[0].length; i++) {
-            finalMag += standard[0][i] * standard[2][i];
-        }
-        return finalMag;
+    //Calculates the field at the vector for the scene
+    @Override
+    public void compute(SceneSnapshot scene) {
+        updateMag(scene.getCharges(), scene.isPointCharge());
     }
 
-    //Draws the vector arrow
-    public void paintObj(Graphics g, ArrayList<EMRod> rods, int width, int height, boolean pointCharge) {
-        updateMag(rods, pointCharge);
+    //Draws the vector arrow from the last calculated magnitudes
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        double xMag = this.xMag;
+        double yMag = this.yMag;
+        double mag = Math.sqrt(xMag * xMag + yMag * yMag);
         g.setColor(Color.BLACK);
         g.fillOval((int) xDim - 3, (int) yDim - 3, 6, 6);
         g.drawLine((int) xDim, (int) yDim, (int) (xDim + xMag), (int) (yDim + yMag));
 
         g.setColor(Color.BLACK);
-        if (getMag() > 0) {
+        if (mag > 0) {
             g.drawLine((int) (xDim + xMag), (int) (yDim + yMag), (int) (xDim + xMag)
-                    + (int) (((xMag) * -.5 + (yMag) * -.5) / Math.sqrt(getMag()) * 2),
-                    (int) ((yDim + yMag) - ((xMag) * -.5 - (yMag) * -.5) / Math.sqrt(getMag()) * 2));
+                    + (int) (((xMag) * -.5 + (yMag) * -.5) / Math.sqrt(mag) * 2),
+                    (int) ((yDim + yMag) - ((xMag) * -.5 - (yMag) * -.5) / Math.sqrt(mag) * 2));
             g.drawLine((int) (xDim + xMag), (int) (yDim + yMag), (int) (xDim + xMag)
-                    + (int) (((xMag) * -.5 + (yMag) * .5) / Math.sqrt(getMag()) * 2),
-                    (int) ((yDim + yMag) + ((xMag) * -.5 - (yMag) * .5) / Math.sqrt(getMag()) * 2));
+                    + (int) (((xMag) * -.5 + (yMag) * .5) / Math.sqrt(mag) * 2),
+                    (int) ((yDim + yMag) + ((xMag) * -.5 - (yMag) * .5) / Math.sqrt(mag) * 2));
         }
     }
 
-    //Calculates the field magnitude from a certain EMRod
-    private double calcField(EMRod charge, double distSqr) {
-        if (pointCharge) {
-            return -(K * 500 * charge.getCharge()) / distSqr;
-        } else {
-            return -(K * charge.getCharge()) / Math.sqrt(distSqr);
+    //Returns the area covered by the dot and the arrow of the vector, or null
+    //    if the arrow has no finite length
+    public Rectangle getBounds() {
+        double xMag = this.xMag;
+        double yMag = this.yMag;
+        double mag = Math.sqrt(xMag * xMag + yMag * yMag);
+        if (Double.isNaN(mag) || Double.isInfinite(mag) || mag > 1e6) {
+            return null;
+        }
+        int head = (int) Math.ceil(2 * Math.sqrt(mag)) + 4;
+        Rectangle bounds = new Rectangle((int) xDim - 4, (int) yDim - 4, 8, 8);
+        bounds.add(new Rectangle((int) (xDim + xMag) - head, (int) (yDim + yMag) - head,
+                2 * head, 2 * head));
+        return bounds;
+    }
+
+    //Returns the anchor point of the vector
+    @Override
+    public Polyline getOutline() {
+        if (outline == null || outline.getX(0) != (float) xDim || outline.getY(0) != (float) yDim) {
+            Polyline anchor = new Polyline(1);
+            anchor.moveTo(xDim, yDim);
+            outline = anchor;
         }
+        return outline;
     }
 
     //Returns the vector's x-dimension
@@ -139,6 +188,7 @@ public class EMVec extends EMObj {
     //Sets the vector's x-dimension
     public void setxDim(double xDim) {
         this.xDim = xDim;
+        version = -1;
     }
 
     //Returns the vecor's y-dimension
@@ -149,6 +199,7 @@ public class EMVec extends EMObj {
     //Sets the vector's y-dimension
     public void setyDim(double yDim) {
         this.yDim = yDim;
+        version = -1;
     }
 
     //Returns the vector's x-magnitude
@@ -10,149 +10,277 @@ This class extends the EMObj abstract class, and stores the information and
 
 package emfields.EMObjects;
 
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.SceneSnapshot;
 import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics;
-import java.util.ArrayList;
 
 public class EquiLine extends EMObj {
 
     //Constants for Equipotential Line generation
-    public final double PRECISION = 1;      //Determines the length of side lines
+    public final double PRECISION = 1;      //Length of the first step along the line
+    public final double MIN_STEP = .25;     //Shortest step along the line
+    public final double MAX_STEP = 10;      //Longest step along the line
+    public final double MAX_CORRECTION = .25;   //Largest correction before a step is retried
+    public final double CORRECTOR_TOL = .01;    //Correction at which a point is on the line
+    public final int MAX_STEPS = 3000;      //Most steps taken on each side
+    public final int MAX_RETRIES = 3000;    //Most shortened steps retried on each side
+    public final double PREVIEW_MAX_STEP = 25;      //Longest step of a preview
+    public final double PREVIEW_CORRECTION = 1;     //Largest correction of a preview step
+    public final double PREVIEW_TOL = .1;           //Correction at which a preview point is on the line
+    public final int PREVIEW_STEPS = 300;           //Most steps taken on each side of a preview
+    public final int PREVIEW_RETRIES = 300;         //Most steps retried on each side of a preview
     public final double COLOR_CONST = 2.75; //Determines color gradient
     
-    private EMVec normal;       //Stores the Vector at the point being analyzed
+    //Evaluates the field and potential at the point being analyzed
+    private final FieldKernel kernel = new FieldKernel();
+    
+    private long evaluations = 0;   //Potential evaluations used by the last compute
+    private long steps = 0;         //Steps taken by the last compute
+    
+    //Last point added to the line while tracing
+    private int xPrev;
+    private int yPrev;
 
     //Starting point coordinates
     private final double xInit;
     private final double yInit;
    
     private double potStand;    //Stores the potential at the starting point
+    private final PolylineCache cache;  //Holds the traced line for the scene
     
-    //Initializes the Equipotential Line variables
-    public EquiLine(int xInit, int yInit, ArrayList<EMRod> rods) {
+    //Initializes the Equipotential Line variables, keeping the traced line in
+    //    the cache of its scene
+    public EquiLine(int xInit, int yInit, ChargeStore charges, PolylineCache cache) {
         this.xInit = xInit;
         this.yInit = yInit;
-        normal = new EMVec(xInit, yInit);
-        normal.updateMag(rods, pointCharge);
-        potStand = calcPot(rods, xInit, yInit);
+        this.cache = cache;
+        potStand = calcPot(charges, xInit, yInit);
+    }
+
+    //Traces the Equipotential Line for the scene, unless it already matches it
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        Polyline line = cache.get(this);
+        evaluations = 0;
+        steps = 0;
+        if (line != null && line.matches(scene)) {
+            return;
+        }
+        this.pointCharge = scene.isPointCharge();
+        line = new Polyline();
+        boolean done = trace(line, scene);
+        evaluations = kernel.getEvaluations();
+        if (done) {
+            line.stamp(scene);
+            cache.put(this, line);
+        }
+    }
+
+    //Checks if the traced line is missing or was traced in another scene,
+    //    unless it was dropped from the cache and waits for the next compute
+    @Override
+    public boolean isStale(SceneSnapshot scene) {
+        Polyline line = cache.get(this);
+        if (line == null) {
+            return !cache.isEvicted(this);
+        }
+        return !line.matches(scene);
+    }
+
+    //Draws the Equipotential Line object on the parent Panel
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        Polyline line = cache.get(this);
+        if (line == null) {
+            return;
+        }
+        line.paint(g, COLOR_CONST);
+        g.setColor(Color.black);
+        g.setFont(RenderResources.LABEL_FONT);
+        g.drawString(line.getLabelText(), (int) xInit + 7, (int) yInit - 7);
     }
 
-    //Draws the Field Line object on the parent Panel
-    public void paintObj(Graphics g, ArrayList<EMRod> rods, int width, int height, boolean pointCharge) {
-        this.pointCharge = pointCharge;
-        potStand = calcPot(rods, xInit, yInit);
-        
-        //Calculates both sides of the Field Line, starting at the point
-        for (int sign = -1; sign < 2; sign += 2) {
+    //Returns the traced line, if it is still cached
+    @Override
+    public Polyline getOutline() {
+        return cache.get(this);
+    }
+
+    //Traces the Equipotential Line through the charges into the given Polyline,
+    //    returning false if the scene was cancelled first.
+    //    Each step predicts the next point along the tangent of the line, then
+    //    pulls it back onto the line with Newton corrections along the gradient.
+    private boolean trace(Polyline line, SceneSnapshot scene) {
+        ChargeStore charges = scene.getCharges();
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        line.reset();
+        kernel.resetEvaluations();
+        kernel.evaluate(charges, xInit, yInit, pointCharge);
+        potStand = kernel.getPot();
+        line.setLabel(potStand);
+        double xGradInit = kernel.getGradX();
+        double yGradInit = kernel.getGradY();
+        double magInit = kernel.getMag();
+        boolean closed = false;
+
+        //Takes long, loosely corrected and capped steps for a preview
+        boolean preview = scene.isPreview();
+        double maxStep = preview ? PREVIEW_MAX_STEP : MAX_STEP;
+        double maxCorrection = preview ? PREVIEW_CORRECTION : MAX_CORRECTION;
+        double tolerance = preview ? PREVIEW_TOL : CORRECTOR_TOL;
+        int maxSteps = preview ? PREVIEW_STEPS : MAX_STEPS;
+        int maxRetries = preview ? PREVIEW_RETRIES : MAX_RETRIES;
+        double closeness = preview ? 4 * PREVIEW_TOL + 1.5 : 1.5;
+
+        //Calculates both sides of the line, unless the first side closes on itself
+        for (int sign = -1; sign < 2 && !closed; sign += 2) {
             double xDim = xInit;
             double yDim = yInit;
-            double tempPot = calcPot(rods, xDim, yDim);
-            int counter = 0;
-            int xPrev = (int) xInit;
-            int yPrev = (int) yInit;
-            double[] dif = new double[2];
-            boolean flag = true;
-            while (xDim > -400 && xDim < width + 400 && yDim > -400 && yDim < height + 400 && flag) {
-                normal.setxDim(xDim);
-                normal.setyDim(yDim);
-                normal.updateMag(rods, pointCharge);
-                dif = calcDif();
-                dif[0] *= sign;
-                dif[1] *= sign;
-                tempPot = calcPot(rods, xDim + dif[0], yDim + dif[1]);
-                double[] dif2 = calcDifPos();
-                if (tempPot < potStand) {
-                    while (tempPot < potStand && xDim + dif[0] > -400 && xDim + dif[0] < width + 400 && yDim + dif[1] > -400 && yDim + dif[1] < height + 400) {
-                        dif[0] += dif2[0] * .1;
-                        dif[1] += dif2[1] * .1;
-                        tempPot = calcPot(rods, xDim + dif[0], yDim + dif[1]);
-                    }
-                } else {
-                    while (tempPot > potStand && xDim + dif[0] < width + 400 && yDim + dif[1] > -400 && yDim + dif[1] < height + 400) {
-                        dif[0] -= dif2[0] * .1;
-                        dif[1] -= dif2[1] * .1;
-                        tempPot = calcPot(rods, xDim + dif[0], yDim + dif[1]);
-                    }
+            double xGrad = xGradInit;
+            double yGrad = yGradInit;
+            double mag = magInit;
+            double step = PRECISION;
+            double travelled = 0;
+            xPrev = (int) xInit;
+            yPrev = (int) yInit;
+            line.moveTo(xPrev, yPrev);
+
+            //Only accepted steps count towards maxSteps; shortened retries have
+            //    their own limit
+            int accepted = 0;
+            int retries = 0;
+            while (accepted < maxSteps) {
+                if (scene.isCancelled()) {
+                    return false;
                 }
-                if ((xPrev - xDim) > 1 || (xPrev - xDim) < -1 || (yPrev - yDim) > 1 || (yPrev - yDim) < -1) {
-                    if (xDim > 0 && xDim < width && yDim > 0 && yDim < height - 100 && counter != 1) {
-                        double colorMag = normal.getMag() * COLOR_CONST;
-                        if (colorMag < 200 / 1.5) {
-                            g.setColor(new Color((int) (200 - colorMag * 1.5), (int) (200 - colorMag * 1.5), (int) (245 - colorMag / 4)));
-                        } else if (colorMag < 200) {
-                            g.setColor(new Color((int) (colorMag - 200.0 / 2.0) * 2, 0, (int) (245 - colorMag / 4)));
-                        } else {
-                            g.setColor(new Color(255, 0, 0));
-                        }
-                        g.drawLine(xPrev, yPrev, (int) (xDim), (int) (yDim));
-                    }
-                    xPrev = (int) xDim;
-                    yPrev = (int) yDim;
+                double grad = Math.sqrt(xGrad * xGrad + yGrad * yGrad);
+                if (!(grad > 0) || Double.isInfinite(grad)) {
+                    break;
                 }
-                xDim += dif[0];
-                yDim += dif[1];
-                for (int i = 18; i < rods.size(); i++) {
-                    EMRod rod = rods.get(i);
-                    double xDist = rod.getxDim() - xDim;
-                    double yDist = rod.getyDim() - yDim;
-                    if (xDist * xDist + yDist * yDist < 100) {
-                        flag = false;
+                step = Math.max(MIN_STEP, Math.min(step, .5 * charges.nearestDistance(xDim, yDim)));
+
+                //Predicts the next point along the tangent
+                double xNext = xDim - sign * yGrad / grad * step;
+                double yNext = yDim + sign * xGrad / grad * step;
+
+                //Corrects the point back onto the line
+                double moved = 0;
+                boolean converged = false;
+                for (int i = 0; i < 3 && !converged; i++) {
+                    kernel.evaluate(charges, xNext, yNext, pointCharge);
+                    double xNorm = kernel.getGradX();
+                    double yNorm = kernel.getGradY();
+                    double normSq = xNorm * xNorm + yNorm * yNorm;
+                    double delta = (kernel.getPot() - potStand) / normSq;
+                    double dist = Math.abs(delta) * Math.sqrt(normSq);
+                    xNext -= delta * xNorm;
+                    yNext -= delta * yNorm;
+                    moved += dist;
+                    converged = dist < tolerance;
+                }
+                if (Double.isNaN(xNext) || Double.isNaN(yNext)) {
+                    break;
+                }
+                if (!converged || moved > maxCorrection) {
+                    if (step > MIN_STEP) {
+                        if (++retries > maxRetries) {
+                            break;
+                        }
+                        step = Math.max(MIN_STEP, step * .5);
+                        continue;
+                    } else if (moved > 2 * maxStep) {
                         break;
                     }
                 }
+                accepted++;
+                steps++;
 
-                if (counter > 20 && Math.abs(xDim - xInit) < 1 && Math.abs(yDim - yInit) < 1) {
+                //Closes the line once it passes back by the starting point
+                if (travelled > 4 * maxStep
+                        && segmentDistance(xDim, yDim, xNext, yNext, xInit, yInit) < closeness) {
+                    record(line, scene, xInit, yInit, mag);
+                    closed = true;
                     break;
                 }
-                if (counter > 3000) {
+
+                travelled += step;
+                xDim = xNext;
+                yDim = yNext;
+                xGrad = kernel.getGradX();
+                yGrad = kernel.getGradY();
+                mag = kernel.getMag();
+                record(line, scene, xDim, yDim, mag);
+                if (moved < maxCorrection / 4) {
+                    step = Math.min(maxStep, step * 1.5);
+                }
+
+                if (xDim <= -400 || xDim >= width + 400 || yDim <= -400 || yDim >= height + 400
+                        || charges.anyWithin(xDim, yDim, 10)) {
                     break;
                 }
-                counter++;
             }
         }
-        g.setColor(Color.black);
-        g.setFont(new Font("default", Font.BOLD, 12));
-        g.drawString((int) (-potStand * 100) / 100. + " ", (int) xInit + 7, (int) yInit - 7);
+        return true;
     }
-    
-    //Calculates the distance the next point is from the previous point in one direction
-    private double[] calcDif() {
-        double xVal = normal.getxMag();
-        double yVal = normal.getyMag();
-        double dist = Math.sqrt(xVal * xVal + yVal * yVal);
-        double[] dif = new double[2];
-        dif[0] = -yVal / dist * PRECISION;
-        dif[1] = xVal / dist * PRECISION;
-        return dif;
+
+    //Adds a point to the line once it has moved more than a pixel, drawn only
+    //    between the menus of the scene
+    private void record(Polyline line, SceneSnapshot scene, double xDim, double yDim, double mag) {
+        if ((xPrev - xDim) > 1 || (xPrev - xDim) < -1 || (yPrev - yDim) > 1 || (yPrev - yDim) < -1) {
+            xPrev = (int) xDim;
+            yPrev = (int) yDim;
+            if (xDim > 0 && xDim < scene.getWidth() && yDim > scene.getTop()
+                    && yDim < scene.getHeight() - scene.getBottom()) {
+                line.lineTo(xPrev, yPrev, mag);
+            } else {
+                line.moveTo(xPrev, yPrev);
+            }
+        }
     }
 
-    //Calculates the distance the next point is from the previous point in the other direction
-    private double[] calcDifPos() {
-        double xVal = normal.getxMag();
-        double yVal = normal.getyMag();
-        double dist = Math.sqrt(xVal * xVal + yVal * yVal);
-        double[] dif = new double[2];
-        dif[0] = xVal / dist * PRECISION;
-        dif[1] = yVal / dist * PRECISION;
-        return dif;
+    //Returns the distance from a point to the segment between two others
+    private static double segmentDistance(double x1, double y1, double x2, double y2,
+            double xDim, double yDim) {
+        double xSeg = x2 - x1;
+        double ySeg = y2 - y1;
+        double lengthSq = xSeg * xSeg + ySeg * ySeg;
+        double t = 0;
+        if (lengthSq > 0) {
+            t = Math.max(0, Math.min(1, ((xDim - x1) * xSeg + (yDim - y1) * ySeg) / lengthSq));
+        }
+        double xDif = x1 + t * xSeg - xDim;
+        double yDif = y1 + t * ySeg - yDim;
+        return Math.sqrt(xDif * xDif + yDif * yDif);
+    }
+
+    //Returns the number of potential evaluations used by the last compute
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    //Returns the number of integration steps taken by the last compute
+    @Override
+    public long getSteps() {
+        return steps;
     }
 
     //Calculates the potential at the point
-    private double calcPot(ArrayList<EMRod> rods, double xDim, double yDim) {
-        double potential = 0;
-        for (int i = 18; i < rods.size(); i++) {
-            EMRod rod = rods.get(i);
-            double xDif = rod.getxDim() - xDim;
-            double yDif = rod.getyDim() - yDim;
-            if (pointCharge) {
-                potential += -rod.getCharge() / Math.sqrt(xDif * xDif + yDif * yDif) * 1000.0;
-            } else {
-                potential += rod.getCharge() * Math.log(Math.sqrt(xDif * xDif + yDif * yDif));
-            }
+    private double calcPot(ChargeStore charges, double xDim, double yDim) {
+        return kernel.potential(charges, xDim, yDim, pointCharge);
+    }
 
-        }
-        return potential;
+    //Returns the x coordinate of the point the line was started from
+    public double getxInit() {
+        return xInit;
+    }
+
+    //Returns the y coordinate of the point the line was started from
+    public double getyInit() {
+        return yInit;
     }
 
     //Returns the object's type
@@ -10,124 +10,213 @@ This class extends the abstract class EMObj, and stores the information and
 
 package emfields.EMObjects;
 
-import java.awt.Color;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.DormandPrinceIntegrator;
+import emfields.EMPhysics.FieldIntegrator;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.SceneSnapshot;
 import java.awt.Graphics;
-import java.util.ArrayList;
 
 public class FieldLine extends EMObj {
 
     //Constants relating to generation of a Field Line
-    public final double PRECISION = 1;      //Precision present in Field line formation
     public final double COLOR_CONST = 2.75; //Determines color gradient
+    public final double SAMPLE_LENGTH = 4;  //Longest segment drawn between points
+    public final double PREVIEW_TOLERANCE = 1;  //Error allowed in a step of a preview
+    public final double PREVIEW_MAX_STEP = 120; //Longest step taken in a preview
+    public final int PREVIEW_STEPS = 300;       //Most steps taken on each side of a preview
    
-    private EMVec tangent;      //Stores the Vector at the point being analyzed
+    //Evaluates the field at the point being analyzed
+    private final FieldKernel kernel = new FieldKernel();
+    
+    //Advances the point along the field
+    private FieldIntegrator integrator = new DormandPrinceIntegrator();
+    private final FieldIntegrator previewIntegrator
+            = new DormandPrinceIntegrator(PREVIEW_TOLERANCE, .5, PREVIEW_MAX_STEP);
+    
+    private long evaluations = 0;   //Field evaluations used by the last compute
+    private long steps = 0;         //Steps taken by the last compute
+    
+    //Last point added to the line while tracing
+    private int xPrev;
+    private int yPrev;
     
     //Store the origin of the field line
     private final double xInit;
     private final double yInit;
 
-    //Initializes the Field Line variables
-    public FieldLine(int xInit, int yInit) {
+    private final PolylineCache cache;  //Holds the traced line for the scene
+
+    //Initializes the Field Line variables, keeping the traced line in the
+    //    cache of its scene
+    public FieldLine(int xInit, int yInit, PolylineCache cache) {
         this.xInit = xInit;
         this.yInit = yInit;
-        tangent = new EMVec(xInit, yInit);
+        this.cache = cache;
+    }
+
+    //Traces the Field Line for the scene, unless it already matches it
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        Polyline line = cache.get(this);
+        evaluations = 0;
+        steps = 0;
+        if (line != null && line.matches(scene)) {
+            return;
+        }
+        this.pointCharge = scene.isPointCharge();
+        line = new Polyline();
+        boolean done = trace(line, scene);
+        evaluations = kernel.getEvaluations();
+        if (done) {
+            line.stamp(scene);
+            cache.put(this, line);
+        }
+    }
+
+    //Checks if the traced line is missing or was traced in another scene,
+    //    unless it was dropped from the cache and waits for the next compute
+    @Override
+    public boolean isStale(SceneSnapshot scene) {
+        Polyline line = cache.get(this);
+        if (line == null) {
+            return !cache.isEvicted(this);
+        }
+        return !line.matches(scene);
     }
 
     //Draws the Field Line object on the parent Panel
     @Override
-    public void paintObj(Graphics g, ArrayList<EMRod> rods, int width, int height, boolean pointCharge) {
-        this.pointCharge = pointCharge;
-
-        double xDim = xInit;
-        double yDim = yInit;
-        int xPrev = (int) xInit;
-        int yPrev = (int) yInit;
-        double[] dif;
-        boolean flag = true;
-        
-        //Calculates one side of the Field Line, starting at the point
-        while (xDim > -400 && xDim < width + 400 && yDim > -400 && yDim < height + 400 && flag) {
-            tangent.updateMag(rods, pointCharge);
-            tangent.setxDim(xDim);
-            tangent.setyDim(yDim);
-            dif = calcDif();
-            if ((xPrev - xDim) > 1 || (xPrev - xDim) < -1 || (yPrev - yDim) > 1 || (yPrev - yDim) < -1) {
-                if (xDim > 0 && xDim < width && yDim > 0 && yDim < height - 100) {
-                    double colorMag = tangent.getMag() * COLOR_CONST;
-                    if (colorMag < 200 / 1.5) {
-                        g.setColor(new Color((int) (200 - colorMag * 1.5), (int) (200 - colorMag * 1.5), (int) (245 - colorMag / 4)));
-                    } else if (colorMag < 200) {
-                        g.setColor(new Color((int) (colorMag - 200.0 / 2.0) * 2, 0, (int) (245 - colorMag / 4)));
-                    } else {
-                        g.setColor(new Color(255, 0, 0));
-                    }
-                    g.drawLine(xPrev, yPrev, (int) (xDim), (int) (yDim));
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        Polyline line = cache.get(this);
+        if (line == null) {
+            return;
+        }
+        line.paint(g, COLOR_CONST);
+    }
+
+    //Returns the traced line, if it is still cached
+    @Override
+    public Polyline getOutline() {
+        return cache.get(this);
+    }
+
+    //Traces the Field Line through the charges into the given Polyline,
+    //    returning false if the scene was cancelled first
+    private boolean trace(Polyline line, SceneSnapshot scene) {
+        ChargeStore charges = scene.getCharges();
+        int width = scene.getWidth();
+        int height = scene.getHeight();
+        line.reset();
+        kernel.resetEvaluations();
+
+        //Takes long, capped steps for a preview
+        FieldIntegrator integrator = scene.isPreview() ? previewIntegrator : this.integrator;
+        int maxSteps = scene.isPreview() ? PREVIEW_STEPS : Integer.MAX_VALUE;
+
+        //Calculates both sides of the Field Line, starting at the point
+        for (int sign = 1; sign > -2; sign -= 2) {
+            int sideSteps = 0;
+            xPrev = (int) xInit;
+            yPrev = (int) yInit;
+            line.moveTo(xPrev, yPrev);
+            boolean flag = integrator.start(kernel, charges, pointCharge, xInit, yInit);
+            double xLast = xInit;
+            double yLast = yInit;
+            double xDirLast = sign * integrator.getXDir();
+            double yDirLast = sign * integrator.getYDir();
+            double magLast = integrator.getMag();
+
+            while (flag) {
+                if (scene.isCancelled()) {
+                    return false;
                 }
-                xPrev = (int) xDim;
-                yPrev = (int) yDim;
-            }
-            xDim += dif[0];
-            yDim += dif[1];
-            for (EMRod rod : rods) {
-                double xDist = rod.getxDim() - xDim;
-                double yDist = rod.getyDim() - yDim;
-                if (xDist * xDist + yDist * yDist < 100) {
-                    flag = false;
+                double xDim = integrator.getX();
+                double yDim = integrator.getY();
+                if (xDim <= -400 || xDim >= width + 400 || yDim <= -400 || yDim >= height + 400) {
                     break;
                 }
-            }
-        }
+                double xDir = sign * integrator.getXDir();
+                double yDir = sign * integrator.getYDir();
+                double mag = integrator.getMag();
+                double xStep = xDim - xLast;
+                double yStep = yDim - yLast;
+                double length = Math.sqrt(xStep * xStep + yStep * yStep);
 
-        xDim = xInit;
-        yDim = yInit;
-        xPrev = (int) xInit;
-        yPrev = (int) yInit;
-        flag = true;
-        
-        
-        //Calculates the other side of the Field Line, starting at the point
-        while (xDim > -400 && xDim < width + 400 && yDim > -400 && yDim < height + 400 && flag) {
-            tangent.updateMag(rods, pointCharge);
-            tangent.setxDim(xDim);
-            tangent.setyDim(yDim);
-            dif = calcDif();
-            if ((xPrev - xDim) > 1 || (xPrev - xDim) < -1 || (yPrev - yDim) > 1 || (yPrev - yDim) < -1) {
-                if (xDim > 0 && xDim < width && yDim > 0 && yDim < height - 100) {
-                    double colorMag = tangent.getMag() * COLOR_CONST;
-                    if (colorMag < 200 / 1.5) {
-                        g.setColor(new Color((int) (200 - colorMag * 1.5), (int) (200 - colorMag * 1.5), (int) (245 - colorMag / 4)));
-                    } else if (colorMag < 200) {
-                        g.setColor(new Color((int) (colorMag - 200.0 / 2.0) * 2, 0, (int) (245 - colorMag / 4)));
-                    } else {
-                        g.setColor(new Color(255, 0, 0));
-                    }
-                    g.drawLine(xPrev, yPrev, (int) (xDim), (int) (yDim));
+                //Long steps are filled in along the cubic through both ends
+                int pieces = (int) (length / SAMPLE_LENGTH);
+                for (int i = 1; i < pieces; i++) {
+                    double t = (double) i / pieces;
+                    double h00 = (1 + 2 * t) * (1 - t) * (1 - t);
+                    double h10 = t * (1 - t) * (1 - t) * length;
+                    double h01 = t * t * (3 - 2 * t);
+                    double h11 = t * t * (t - 1) * length;
+                    record(line, scene,
+                            h00 * xLast + h10 * xDirLast + h01 * xDim + h11 * xDir,
+                            h00 * yLast + h10 * yDirLast + h01 * yDim + h11 * yDir,
+                            magLast + t * (mag - magLast));
                 }
-                xPrev = (int) xDim;
-                yPrev = (int) yDim;
+                record(line, scene, xDim, yDim, mag);
+
+                xLast = xDim;
+                yLast = yDim;
+                xDirLast = xDir;
+                yDirLast = yDir;
+                magLast = mag;
+                steps++;
+                flag = ++sideSteps < maxSteps && integrator.step(kernel, charges, pointCharge, sign)
+                        && !charges.anyWithin(integrator.getX(), integrator.getY(), 10);
             }
-            xDim -= dif[0];
-            yDim -= dif[1];
-            for (EMRod rod : rods) {
-                double xDist = rod.getxDim() - xDim;
-                double yDist = rod.getyDim() - yDim;
-                if (xDist * xDist + yDist * yDist < 100) {
-                    flag = false;
-                    break;
-                }
+        }
+        return true;
+    }
+
+    //Adds a point to the line once it has moved more than a pixel, drawn only
+    //    between the menus of the scene
+    private void record(Polyline line, SceneSnapshot scene, double xDim, double yDim, double mag) {
+        if ((xPrev - xDim) > 1 || (xPrev - xDim) < -1 || (yPrev - yDim) > 1 || (yPrev - yDim) < -1) {
+            xPrev = (int) xDim;
+            yPrev = (int) yDim;
+            if (xDim > 0 && xDim < scene.getWidth() && yDim > scene.getTop()
+                    && yDim < scene.getHeight() - scene.getBottom()) {
+                line.lineTo(xPrev, yPrev, mag);
+            } else {
+                line.moveTo(xPrev, yPrev);
             }
         }
     }
 
-    //Calculates the distance the next point is from the previous point
-    public double[] calcDif() {
-        double xVal = tangent.getxMag();
-        double yVal = tangent.getyMag();
-        double dist = Math.sqrt(xVal * xVal + yVal * yVal);
-        double[] dif = new double[2];
-        dif[0] = xVal / dist * PRECISION;
-        dif[1] = yVal / dist * PRECISION;
-        return dif;
+    //Returns the integrator used to trace the line
+    public FieldIntegrator getIntegrator() {
+        return integrator;
+    }
+
+    //Sets the integrator used to trace the line, so it is traced again
+    public void setIntegrator(FieldIntegrator integrator) {
+        this.integrator = integrator;
+        cache.remove(this);
+    }
+
+    //Returns the number of field evaluations used by the last compute
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    //Returns the number of integration steps taken by the last compute
+    @Override
+    public long getSteps() {
+        return steps;
+    }
+
+    //Returns the x coordinate of the point the line was started from
+    public double getxInit() {
+        return xInit;
+    }
+
+    //Returns the y coordinate of the point the line was started from
+    public double getyInit() {
+        return yInit;
     }
 
     //Returns the object's type
@@ -10,96 +10,243 @@ This class extends the EMObj class. Its purpose is to store the information for
 
 package emfields.EMObjects;
 
+import emfields.EMPhysics.ChargeListener;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.SceneSnapshot;
 import java.awt.Color;
 import java.awt.Dimension;
-import java.awt.Font;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class GaussSurface extends EMObj {
 
-    //Stores all of the coordinates of the guassian surface vertices
-    private final ArrayList<Dimension> gaussCoord = new ArrayList<>();
+    private static final int INITIAL_CAPACITY = 16;
+
+    //Stores the coordinates of the guassian surface vertices, only the first
+    //    count are valid. Trimmed to their length once the surface is finished.
+    private int[] xCoord = new int[INITIAL_CAPACITY];
+    private int[] yCoord = new int[INITIAL_CAPACITY];
+    private int count = 0;
+    
+    //Stores the fluxes of the sides ending at each vertex while the surface
+    //    is placed, null once it is finished
+    private double[] fluxes = new double[INITIAL_CAPACITY];
+
+    //Corners of the flux drawn against a side, reused for every side
+    private final int[] xBar = new int[4];
+    private final int[] yBar = new int[4];
     
-    //Stores all of the fluxes of the corresponding sides
-    private final ArrayList<Double> fluxes = new ArrayList<>();
+    private EMVec vect;     //Vector which shows the field at the newest point
     
-    private EMVec vect;     //Vector which is used to determine flux
+    //Evaluates the field along the sides of the surface
+    private final FieldKernel kernel = new FieldKernel();
+
+    //Distance between field samples along a side, at full precision and in
+    //    a preview
+    private static final double SAMPLE_STEP = .1;
+    private static final double PREVIEW_SAMPLE_STEP = 1;
+    private boolean preview = false;    //Flags if the last compute was a preview
     
     private double angle = 0;           //Stores total angle changes
     private double totFlux = 0;         //Stores the total flux of the surface
-    private boolean finished = false;   //Flag for if the surface is finished
+    private volatile boolean finished = false;  //Flag for if the surface is finished
+    private boolean shown = true;       //Flag for if the surface was last drawn
+    private Polyline outline;           //Corners, for finding the surface under the mouse
+    private boolean analytic = true;    //Flag for if flux is found in closed form
+    
+    //Fluxes and total flux last published for painting a finished surface
+    private volatile double[] shownFlux;
+    private volatile double shownTotal;
+    
+    //Flux through every side from each charge, in the order of the charges
+    private final ArrayList<FluxColumn> columns = new ArrayList<>();
+    private double[] sideFlux;          //Total flux through every side
+    private int version;                //Charge version the columns match
+    private boolean columnsPoint;       //Point charge flag the columns match
+    private int deltas = 0;             //Column changes since the totals were summed
+    private long evaluations;           //Side fluxes calculated by the last update
     
-    //Used for debugging (see update function)
-    /*
-    double min;
-    double max;
-    */
+    //Number of column changes before the totals are summed from scratch
+    private static final int RESYNC_DELTAS = 64;
+    
+    //Keeps the columns in step with the charges added and removed
+    private final ChargeListener columnUpdater = new ChargeListener() {
+
+        @Override
+        public void chargeAdded(int index, double xDim, double yDim, double charge) {
+            columns.add(index, new FluxColumn(sideFlux.length));
+        }
+
+        @Override
+        public void chargeMoved(int index, double xOld, double yOld, double xDim,
+                double yDim, double charge) {
+        }
+
+        @Override
+        public void chargeRemoved(int index, double xDim, double yDim, double charge) {
+            FluxColumn column = columns.remove(index);
+            for (int i = 0; i < sideFlux.length; i++) {
+                sideFlux[i] -= column.flux[i];
+            }
+            deltas++;
+        }
+    };
 
     //Adds another section to the the gaussian surface
-    public void add(Dimension point, ArrayList<EMRod> rods) {
-        gaussCoord.add(point);
+    public void add(int xDim, int yDim, ChargeStore charges) {
+        append(xDim, yDim);
         double flux = 0;
-        if (gaussCoord.size() > 1) {
-            flux = calcFlux(rods, point.getWidth(), point.getHeight(), gaussCoord.size() - 1);
+        if (count > 1) {
+            flux = calcFlux(charges, xDim, yDim, count - 1);
+            if (vect == null) {
+                vect = new EMVec(xDim, yDim, charges);
+            } else {
+                vect.setxDim(xDim);
+                vect.setyDim(yDim);
+                vect.updateMag(charges, pointCharge);
+            }
         }
         totFlux += flux;
-        fluxes.add(flux);
-        angle += gaussAngleDif(gaussCoord, gaussCoord.size() - 1);
+        fluxes[count - 1] = flux;
+        angle += gaussAngleDif(count - 1);
     }
 
-    //Returns the coordinates of a point on the surface
-    public Dimension get(int index) {
-        return gaussCoord.get(index);
+    //Adds another section to the the gaussian surface at the point
+    public void add(Dimension point, ChargeStore charges) {
+        add(point.width, point.height, charges);
+    }
+
+    //Adds a vertex, doubling the buffers when they are full
+    private void append(int xDim, int yDim) {
+        if (count == xCoord.length) {
+            int capacity = count * 2;
+            xCoord = Arrays.copyOf(xCoord, capacity);
+            yCoord = Arrays.copyOf(yCoord, capacity);
+            if (fluxes != null) {
+                fluxes = Arrays.copyOf(fluxes, capacity);
+            }
+        }
+        xCoord[count] = xDim;
+        yCoord[count] = yDim;
+        count++;
+    }
+
+    //Returns the x coordinate of a point on the surface
+    public int getX(int index) {
+        checkIndex(index);
+        return xCoord[index];
+    }
+
+    //Returns the y coordinate of a point on the surface
+    public int getY(int index) {
+        checkIndex(index);
+        return yCoord[index];
     }
 
     //Returns the number of points on the surface
     public int size() {
-        return gaussCoord.size();
+        return count;
     }
 
-    //Draws the gaussian surface
-    public void paintObj(Graphics g, ArrayList<EMRod> rods, int width, int height, boolean pointCharge) {
-        this.pointCharge = pointCharge;
-        if (pointCharge) {
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Point " + index + " of " + count);
+        }
+    }
+
+    //Calculates the fluxes of a finished surface for the scene
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        evaluations = 0;
+        if (!finished || scene.isPointCharge()) {
             return;
         }
-        if (finished) {
-            update(rods);
+        this.pointCharge = scene.isPointCharge();
+        this.preview = scene.isPreview();
+        update(scene.getCharges());
+    }
+
+    //Draws the gaussian surface
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        shown = !scene.isPointCharge();
+        if (!shown) {
+            return;
         }
-        for (int i = 0; i < gaussCoord.size() - 1; i++) {
-            int height1 = gaussCoord.get(i).height;
-            int height2 = gaussCoord.get(i + 1).height;
-            int width1 = gaussCoord.get(i).width;
-            int width2 = gaussCoord.get(i + 1).width;
+        boolean done = finished;
+        double[] flux = done ? shownFlux : fluxes;
+        int sides = done ? flux.length : count;
+        for (int i = 0; i < count - 1; i++) {
+            int height1 = yCoord[i];
+            int height2 = yCoord[i + 1];
+            int width1 = xCoord[i];
+            int width2 = xCoord[i + 1];
             int heightTot = height1 - height2;
             int widthTot = width1 - width2;
             double size = Math.sqrt(heightTot * heightTot + widthTot * widthTot);
             g.drawLine(width1, height1, width2, height2);
-            if (i < fluxes.size() - 1) {
-                int yDif = (int) (widthTot / size * fluxes.get(i + 1) / size);
-                int xDif = (int) (-heightTot / size * fluxes.get(i + 1) / size);
+            if (i < sides - 1) {
+                double side = flux[i + 1];
+                int yDif = (int) (widthTot / size * side / size);
+                int xDif = (int) (-heightTot / size * side / size);
+                xBar[0] = width1;
+                xBar[1] = width2;
+                xBar[2] = width2 + xDif;
+                xBar[3] = width1 + xDif;
+                yBar[0] = height1;
+                yBar[1] = height2;
+                yBar[2] = height2 + yDif;
+                yBar[3] = height1 + yDif;
                 g.setColor(Color.GRAY);
-                g.fillPolygon(new int[]{width1, width2, width2 + xDif, width1 + xDif}, new int[]{height1, height2, height2 + yDif, height1 + yDif}, 4);
+                g.fillPolygon(xBar, yBar, 4);
                 g.setColor(Color.black);
             }
         }
-        if (finished) {
-            g.setFont(new Font("default", Font.BOLD, 12));
-            System.out.println(totFlux + " " + angle / (Math.PI * -2) + " " + ((totFlux * angle > 0) ? -.5 : .5));
-            g.drawString("Q = " + (int) (totFlux / 6323.0 * -angle / Math.abs(angle) + ((totFlux * angle > 0) ? -.5 : .5)), (int) gaussCoord.get(0).getWidth() + 10, (int) gaussCoord.get(0).getHeight() - 10);
-            System.out.println(totFlux);
+        if (done) {
+            double total = shownTotal;
+            g.setFont(RenderResources.LABEL_FONT);
+            g.drawString("Q = " + (int) (total / unitFlux() * -angle / Math.abs(angle) + ((total * angle > 0) ? -.5 : .5)), xCoord[0] + 10, yCoord[0] - 10);
         } else if (vect != null) {
-            vect.paintObj(g, rods, 0, 0, pointCharge);
+            vect.paintObj(g, scene);
         }
 
     }
 
+    //Returns the area drawn for the newest side of a surface being placed,
+    //    with its flux and the vector at its end, or null if it is unknown
+    public Rectangle getNewestBounds() {
+        int last = count - 1;
+        Rectangle bounds = new Rectangle(xCoord[last] - 2, yCoord[last] - 2, 4, 4);
+        if (last > 0) {
+            bounds.add(new Rectangle(xCoord[last - 1] - 2, yCoord[last - 1] - 2, 4, 4));
+            int heightTot = yCoord[last - 1] - yCoord[last];
+            int widthTot = xCoord[last - 1] - xCoord[last];
+            double size = Math.sqrt(heightTot * heightTot + widthTot * widthTot);
+            double side = fluxes[last];
+            double reach = Math.abs(side / size) + 2;
+            if (!(reach < 1e6)) {
+                return null;
+            }
+            bounds.grow((int) Math.ceil(reach), (int) Math.ceil(reach));
+        }
+        if (vect != null) {
+            Rectangle arrow = vect.getBounds();
+            if (arrow == null) {
+                return null;
+            }
+            bounds.add(arrow);
+        }
+        return bounds;
+    }
+
     //Determines the angle at an edge in the gaussian surface
-    private double gaussAngleDif(ArrayList<Dimension> gaussCoord, int index) {
+    private double gaussAngleDif(int index) {
         double angleDif = 0;
         if (index > 2) {
-            angleDif = Math.atan2(gaussCoord.get(index - 1).getHeight() - gaussCoord.get(index - 2).getHeight(), gaussCoord.get(index - 1).getWidth() - gaussCoord.get(index - 2).getWidth()) - Math.atan2(gaussCoord.get(index).getHeight() - gaussCoord.get(index - 1).getHeight(), gaussCoord.get(index).getWidth() - gaussCoord.get(index - 1).getWidth());
+            angleDif = Math.atan2(yCoord[index - 1] - yCoord[index - 2], xCoord[index - 1] - xCoord[index - 2]) - Math.atan2(yCoord[index] - yCoord[index - 1], xCoord[index] - xCoord[index - 1]);
             if (angleDif > Math.PI) {
                 angleDif -= 2 * Math.PI;
             } else if (angleDif < -Math.PI) {
@@ -109,24 +256,48 @@ public class GaussSurface extends EMObj {
         return angleDif;
     }
 
-    //Warps up the calculations for the gaussian surface
-    public void wrapUp(ArrayList<EMRod> rods) {
-        gaussCoord.add(gaussCoord.get(0));
-        angle += gaussAngleDif(gaussCoord, gaussCoord.size() - 1);
-        gaussCoord.add(gaussCoord.get(1));
-        angle += gaussAngleDif(gaussCoord, gaussCoord.size() - 1);
+    //Returns the corners of the surface, or null while it is hidden
+    @Override
+    public Polyline getOutline() {
+        if (!shown || count == 0) {
+            return null;
+        }
+        if (outline == null || outline.size() != count) {
+            Polyline corners = new Polyline(count);
+            corners.moveTo(xCoord[0], yCoord[0]);
+            for (int i = 1; i < count; i++) {
+                corners.lineTo(xCoord[i], yCoord[i], 0);
+            }
+            outline = corners;
+        }
+        return outline;
+    }
+
+    //Warps up the calculations for the gaussian surface, then trims the
+    //    vertices to their length and drops the fluxes kept while placing it
+    public void wrapUp(ChargeStore charges) {
+        int sides = count + 1;
+        append(xCoord[0], yCoord[0]);
+        angle += gaussAngleDif(count - 1);
+        append(xCoord[1], yCoord[1]);
+        angle += gaussAngleDif(count - 1);
         
         double prevFlux = totFlux;
-        int size = gaussCoord.size() - 1;
-        totFlux += calcFlux(rods, gaussCoord.get(size - 1).getWidth(), gaussCoord.get(size - 1).getHeight(), size - 1);
-        fluxes.add(totFlux - prevFlux);
+        int size = count - 1;
+        totFlux += calcFlux(charges, xCoord[size - 1], yCoord[size - 1], size - 1);
+        fluxes[sides - 1] = totFlux - prevFlux;
+        xCoord = Arrays.copyOf(xCoord, count);
+        yCoord = Arrays.copyOf(yCoord, count);
+        shownFlux = Arrays.copyOf(fluxes, sides);
+        fluxes = null;
+        shownTotal = totFlux;
         finished = true;
-        
-        //Used for debugging (see update function)
-        /*
-        min = totFlux;
-        max = totFlux;
-        */
+    }
+
+    //Checks if the surface has been closed by wrapUp, which repeats the first
+    //    two corners at its end
+    public boolean isFinished() {
+        return finished;
     }
 
     //Returns the total angle traversed by the surface
@@ -136,25 +307,67 @@ public class GaussSurface extends EMObj {
 
     //Returns the total flux in the gaussian surface
     public double getTotFlux() {
-        return totFlux;
+        return finished ? shownTotal : totFlux;
     }
 
     //Calculates the flux for a side of the surface
-    private double calcFlux(ArrayList<EMRod> rods, double xDim, double yDim, int index) {
+    private double calcFlux(ChargeStore charges, double xDim, double yDim, int index) {
         double gaussDif = 0;
         if (index > 0) {
-            double xDif = gaussCoord.get(index - 1).getWidth() - xDim;
-            double yDif = gaussCoord.get(index - 1).getHeight() - yDim;
-            double length = Math.sqrt((xDif * xDif) + (yDif * yDif));
-            for (double i = 0; i < length; i += .1) {
-                vect = new EMVec((xDim + i * xDif / length), (yDim + i * yDif / length), rods);
-                vect.updateMag(rods, pointCharge);
-                gaussDif += vect.getMag() * .1 * Math.sin(Math.atan2(-vect.getyMag(), vect.getxMag()) - Math.atan2(yDif, -xDif));
+            double xPrev = xCoord[index - 1];
+            double yPrev = yCoord[index - 1];
+            if (analytic) {
+                gaussDif = kernel.segmentFlux(charges, xDim, yDim, xPrev, yPrev, pointCharge);
+            } else {
+                gaussDif = calcFluxSampled(charges, xDim, yDim, xPrev, yPrev);
             }
         }
         return gaussDif;
     }
 
+    //Calculates the flux for a side by sampling the field every tenth of a
+    //    pixel, or every pixel in a preview, which is kept to check the
+    //    analytic flux against
+    private double calcFluxSampled(ChargeStore charges, double xDim, double yDim,
+            double xPrev, double yPrev) {
+        double gaussDif = 0;
+        double xDif = xPrev - xDim;
+        double yDif = yPrev - yDim;
+        double length = Math.sqrt((xDif * xDif) + (yDif * yDif));
+        double sample = preview ? PREVIEW_SAMPLE_STEP : SAMPLE_STEP;
+        for (double i = 0; i < length; i += sample) {
+            kernel.evaluateField(charges, xDim + i * xDif / length, yDim + i * yDif / length, pointCharge);
+            gaussDif += (kernel.getEy() * xDif - kernel.getEx() * yDif) / length * sample;
+        }
+        return gaussDif;
+    }
+
+    //Returns whether the flux is calculated analytically
+    public boolean isAnalytic() {
+        return analytic;
+    }
+
+    //Sets whether the flux is calculated analytically or by sampling
+    public void setAnalytic(boolean analytic) {
+        this.analytic = analytic;
+    }
+
+    //Returns the flux through the surface of a single unit of charge
+    private double unitFlux() {
+        if (analytic) {
+            return 2 * Math.PI * FieldKernel.K;
+        } else {
+            return 6323.0;
+        }
+    }
+
+    //Returns the number of side fluxes or field samples calculated by the
+    //    last update
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
     //Returns the type of this object
     @Override
     public String getType() {
@@ -167,39 +380,92 @@ public class GaussSurface extends EMObj {
         throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
     }
 
-    //Updates the fluxes on the gaussian surface
-    public void update(ArrayList<EMRod> rods) {
-        fluxes.clear();
-        totFlux = 0;
-        angle = 0;
-        for (int i = 0; i < gaussCoord.size() - 2; i++) {
-            double flux = 0;
-            if (gaussCoord.size() > 1) {
-                flux = calcFlux(rods, gaussCoord.get(i).getWidth(), gaussCoord.get(i).getHeight(), i);
+    //Updates the fluxes on the gaussian surface. Flux is linear in the
+    //    charges, so only the columns of charges which were added or moved
+    //    since the last update are calculated again.
+    public synchronized void update(ChargeStore charges) {
+        evaluations = 0;
+        if (!analytic) {
+            updateSampled(charges);
+            return;
+        }
+        if (sideFlux == null || columnsPoint != pointCharge
+                || !charges.replay(version, columnUpdater)) {
+            sideFlux = new double[count - 1];
+            columns.clear();
+            for (int j = 0; j < charges.size(); j++) {
+                columns.add(new FluxColumn(sideFlux.length));
             }
-            totFlux += flux;
-            fluxes.add(flux);
-            angle += gaussAngleDif(gaussCoord, i);
-        }
-        angle += gaussAngleDif(gaussCoord, gaussCoord.size() - 2);
-        angle += gaussAngleDif(gaussCoord, gaussCoord.size() - 1);
-        double flux;
-        int size = gaussCoord.size() - 2;
-        flux = calcFlux(rods, gaussCoord.get(size).getWidth(), gaussCoord.get(size).getHeight(), size);
-        totFlux += flux;
-        fluxes.add(flux);
-        
-        //Used this for debugging when adding optimizations to these calculations
-        /*
-        if (totFlux > max) {
-            max = totFlux;
+            deltas = RESYNC_DELTAS;
         }
-        if (totFlux < min) {
-            min = totFlux;
+        version = charges.getVersion();
+        columnsPoint = pointCharge;
+
+        for (int j = 0; j < charges.size(); j++) {
+            FluxColumn column = columns.get(j);
+            double xDim = charges.getX(j);
+            double yDim = charges.getY(j);
+            if (column.xDim != xDim || column.yDim != yDim || column.charge != charges.getCharge(j)) {
+                column.xDim = xDim;
+                column.yDim = yDim;
+                column.charge = charges.getCharge(j);
+                evaluations += sideFlux.length - 1;
+                for (int i = 1; i < sideFlux.length; i++) {
+                    double flux = FieldKernel.chargeFlux(xDim, yDim, column.charge,
+                            xCoord[i], yCoord[i], xCoord[i - 1], yCoord[i - 1], pointCharge);
+                    sideFlux[i] += flux - column.flux[i];
+                    column.flux[i] = flux;
+                }
+                deltas++;
+            }
+        }
+
+        //Sums the totals from scratch now and then, so rounding cannot build up
+        if (deltas >= RESYNC_DELTAS) {
+            Arrays.fill(sideFlux, 0);
+            for (FluxColumn column : columns) {
+                for (int i = 0; i < sideFlux.length; i++) {
+                    sideFlux[i] += column.flux[i];
+                }
+            }
+            deltas = 0;
+        }
+
+        totFlux = 0;
+        for (int i = 0; i < sideFlux.length; i++) {
+            totFlux += sideFlux[i];
+        }
+        shownFlux = sideFlux.clone();
+        shownTotal = totFlux;
+    }
+
+    //Updates the fluxes by sampling every side against every charge
+    private void updateSampled(ChargeStore charges) {
+        long before = kernel.getEvaluations();
+        sideFlux = null;
+        totFlux = 0;
+        double[] flux = new double[count - 1];
+        for (int i = 1; i < flux.length; i++) {
+            flux[i] = calcFlux(charges, xCoord[i], yCoord[i], i);
+            totFlux += flux[i];
+        }
+        shownFlux = flux;
+        shownTotal = totFlux;
+        evaluations = kernel.getEvaluations() - before;
+    }
+
+    //Holds the flux through every side from a single charge, along with the
+    //    charge it was calculated for
+    private static class FluxColumn {
+
+        private double xDim = Double.NaN;
+        private double yDim = Double.NaN;
+        private double charge;
+        private final double[] flux;
+
+        private FluxColumn(int sides) {
+            flux = new double[sides];
         }
-        System.out.println("difference: " + (max - min));
-        System.out.println("middle: " + ((max + min) / 2));
-        */
     }
 
 }
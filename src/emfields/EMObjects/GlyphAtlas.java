@@ -0,0 +1,102 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class prebuilds the arrows used to draw a lattice of field vectors. Every
+    arrow is drawn once, for a fixed set of directions and lengths, into a single
+    image; drawing a vector is then a copy of one cell of that image instead
+    of several lines and a square root.
+*/
+
+package emfields.EMObjects;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+
+public class GlyphAtlas {
+
+    //Layout of the atlas
+    public static final int ANGLES = 64;    //Directions drawn, around the full circle
+    public static final int LENGTHS = 8;    //Lengths drawn for each direction
+
+    //Range of field magnitudes spread over the lengths, on a log scale
+    private static final double MIN_LOG = 1;    //log2 of the magnitude of the shortest arrow
+    private static final double MAX_LOG = 9;    //log2 of the magnitude of the longest arrow
+
+    //Atlases already built, by cell size
+    private static final HashMap<Integer, GlyphAtlas> atlases = new HashMap<>();
+
+    private final int cell;             //Width and height of one arrow
+    private final BufferedImage image;  //Every arrow, one direction per row
+
+    //Returns the shared atlas with the given cell size
+    public static synchronized GlyphAtlas forCell(int cell) {
+        GlyphAtlas atlas = atlases.get(cell);
+        if (atlas == null) {
+            atlas = new GlyphAtlas(cell);
+            atlases.put(cell, atlas);
+        }
+        return atlas;
+    }
+
+    //Draws every arrow for the given cell size
+    private GlyphAtlas(int cell) {
+        this.cell = cell;
+        image = new BufferedImage(cell * LENGTHS, cell * ANGLES, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.BLACK);
+        g.setStroke(new BasicStroke(1));
+        double center = cell / 2.0;
+        for (int a = 0; a < ANGLES; a++) {
+            double angle = 2 * Math.PI * a / ANGLES;
+            double ux = Math.cos(angle);
+            double uy = Math.sin(angle);
+            for (int l = 0; l < LENGTHS; l++) {
+                double half = (cell - 2) / 2.0 * (0.3 + 0.7 * l / (LENGTHS - 1));
+                double head = Math.min(4, half * 0.6);
+                double cx = l * cell + center;
+                double cy = a * cell + center;
+                double tipX = cx + ux * half;
+                double tipY = cy + uy * half;
+                drawLine(g, cx - ux * half, cy - uy * half, tipX, tipY);
+                drawLine(g, tipX, tipY, tipX - head * (ux - uy * .5), tipY - head * (uy + ux * .5));
+                drawLine(g, tipX, tipY, tipX - head * (ux + uy * .5), tipY - head * (uy - ux * .5));
+            }
+        }
+        g.dispose();
+    }
+
+    //Draws a line between points which need not be on whole pixels
+    private static void drawLine(Graphics2D g, double x1, double y1, double x2, double y2) {
+        g.draw(new Line2D.Double(x1, y1, x2, y2));
+    }
+
+    //Draws the arrow for a field centered on a point, skipping undefined fields
+    public void draw(Graphics g, double xDim, double yDim, double xMag, double yMag) {
+        double mag = Math.sqrt(xMag * xMag + yMag * yMag);
+        if (!(mag > 0) || Double.isInfinite(mag)) {
+            return;
+        }
+        int a = (int) Math.round(Math.atan2(yMag, xMag) / (2 * Math.PI) * ANGLES);
+        a = Math.floorMod(a, ANGLES);
+        double log = Math.log(mag) / Math.log(2);
+        int l = (int) Math.round((log - MIN_LOG) / (MAX_LOG - MIN_LOG) * (LENGTHS - 1));
+        l = Math.max(0, Math.min(LENGTHS - 1, l));
+
+        int x = (int) Math.round(xDim - cell / 2.0);
+        int y = (int) Math.round(yDim - cell / 2.0);
+        g.drawImage(image, x, y, x + cell, y + cell,
+                l * cell, a * cell, (l + 1) * cell, (a + 1) * cell, null);
+    }
+
+    //Returns the width and height of one arrow
+    public int getCell() {
+        return cell;
+    }
+}
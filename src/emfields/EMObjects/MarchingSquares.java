@@ -0,0 +1,488 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class finds equipotential lines by sampling the potential once on a grid
+    and running marching squares over it for every wanted level. Cells near a
+    charge, where the potential bends sharply, are split into finer cells. The
+    points where a finer cell meets a coarse one are interpolated along the
+    coarse edge, so the lines cross between them without gaps. The segments
+    of each level are then joined end to end into polylines, matching their
+    ends by the edge of the fine lattice they lie on.
+*/
+
+package emfields.EMObjects;
+
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.PotentialSampler;
+import emfields.EMPhysics.SceneSnapshot;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class MarchingSquares {
+
+    public static final int SPACING = 8;    //Width of a coarse cell
+    public static final int REFINE = 4;     //Fine cells across a coarse cell near a charge
+    private static final double FINE_STEP = (double) SPACING / REFINE;  //Width of a fine cell
+    private static final int NEAR = 1;      //Coarse cells around a charge which are refined
+    private static final int TILE_ROWS = 8; //Rows of points sampled by one task
+
+    //Share of the samples left out at each end when spacing the levels
+    private static final double TAIL = .05;
+
+    //Shortest line which is given a label
+    private static final double LABEL_LENGTH = 60;
+
+    //Layout of the coarse grid
+    private final int top;      //Height of the area above the grid
+    private final int bottom;   //Height of the area below the grid
+    private int cols;           //Points across
+    private int rows;           //Points down
+
+    private double[] values;        //Potential at every coarse point
+    private double[][] fine;        //Potential at the fine points of each refined cell
+    private double[] lows;          //Lowest potential in each cell
+    private double[] highs;         //Highest potential in each cell
+    private double fieldScale;      //Ratio of the field to the potential gradient
+
+    //Initializes a grid covering the panel apart from the top and bottom menus
+    public MarchingSquares(int top, int bottom) {
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    //Samples the potential of the scene, returning false if it was cancelled
+    public boolean sample(SceneSnapshot scene) {
+        cols = Math.max(2, scene.getWidth() / SPACING + 2);
+        rows = Math.max(2, (scene.getHeight() - top - bottom) / SPACING + 2);
+        values = new double[cols * rows];
+        fine = new double[(cols - 1) * (rows - 1)][];
+        fieldScale = scene.isPointCharge() ? FieldKernel.POINT_SCALE : FieldKernel.K;
+        PotentialSampler sampler = new PotentialSampler(scene.getCharges(),
+                scene.isPointCharge(), 1);
+
+        ArrayList<RecursiveAction> tiles = new ArrayList<>();
+        for (int r0 = 0; r0 < rows; r0 += TILE_ROWS) {
+            final int first = r0;
+            final int last = Math.min(rows, r0 + TILE_ROWS);
+            tiles.add(new RecursiveAction() {
+
+                @Override
+                protected void compute() {
+                    for (int r = first; r < last && !scene.isCancelled(); r++) {
+                        for (int c = 0; c < cols; c++) {
+                            values[r * cols + c] = sampler.sample(getX(c), getY(r));
+                        }
+                    }
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tiles);
+        if (scene.isCancelled()) {
+            return false;
+        }
+
+        markRefined(scene.getCharges());
+        tiles.clear();
+        for (int r0 = 0; r0 < rows - 1; r0 += TILE_ROWS) {
+            final int first = r0;
+            final int last = Math.min(rows - 1, r0 + TILE_ROWS);
+            tiles.add(new RecursiveAction() {
+
+                @Override
+                protected void compute() {
+                    for (int r = first; r < last && !scene.isCancelled(); r++) {
+                        for (int c = 0; c < cols - 1; c++) {
+                            if (fine[r * (cols - 1) + c] != null) {
+                                refine(sampler, c, r);
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tiles);
+        if (scene.isCancelled()) {
+            return false;
+        }
+        findRanges();
+        return true;
+    }
+
+    //Finds the range of potential in every cell, so a level skips the cells it misses
+    private void findRanges() {
+        int cells = cols - 1;
+        lows = new double[cells * (rows - 1)];
+        highs = new double[cells * (rows - 1)];
+        for (int r = 0; r < rows - 1; r++) {
+            for (int c = 0; c < cells; c++) {
+                double v00 = values[r * cols + c];
+                double v10 = values[r * cols + c + 1];
+                double v01 = values[(r + 1) * cols + c];
+                double v11 = values[(r + 1) * cols + c + 1];
+                double low = Math.min(Math.min(v00, v10), Math.min(v01, v11));
+                double high = Math.max(Math.max(v00, v10), Math.max(v01, v11));
+                double[] cell = fine[r * cells + c];
+                if (cell != null) {
+                    for (double pot : cell) {
+                        low = Math.min(low, pot);
+                        high = Math.max(high, pot);
+                    }
+                }
+                lows[r * cells + c] = low;
+                highs[r * cells + c] = high;
+            }
+        }
+    }
+
+    //Marks the cells around every charge as refined
+    private void markRefined(ChargeStore charges) {
+        int cells = cols - 1;
+        for (int i = 0; i < charges.size(); i++) {
+            int col = (int) Math.floor(charges.getX(i) / SPACING);
+            int row = (int) Math.floor((charges.getY(i) - top) / SPACING);
+            for (int r = Math.max(0, row - NEAR); r <= Math.min(rows - 2, row + NEAR); r++) {
+                for (int c = Math.max(0, col - NEAR); c <= Math.min(cols - 2, col + NEAR); c++) {
+                    if (fine[r * cells + c] == null) {
+                        fine[r * cells + c] = new double[(REFINE + 1) * (REFINE + 1)];
+                    }
+                }
+            }
+        }
+    }
+
+    //Fills the fine points of a refined cell. Points on an edge shared with a
+    //    coarse cell are interpolated from the corners so both cells agree there.
+    private void refine(PotentialSampler sampler, int c, int r) {
+        double[] cell = fine[r * (cols - 1) + c];
+        double v00 = values[r * cols + c];
+        double v10 = values[r * cols + c + 1];
+        double v01 = values[(r + 1) * cols + c];
+        double v11 = values[(r + 1) * cols + c + 1];
+        boolean fineTop = isRefined(c, r - 1);
+        boolean fineBottom = isRefined(c, r + 1);
+        boolean fineLeft = isRefined(c - 1, r);
+        boolean fineRight = isRefined(c + 1, r);
+        double step = FINE_STEP;
+
+        for (int j = 0; j <= REFINE; j++) {
+            for (int i = 0; i <= REFINE; i++) {
+                double fx = (double) i / REFINE;
+                double fy = (double) j / REFINE;
+                double pot;
+                if ((i == 0 || i == REFINE) && (j == 0 || j == REFINE)) {
+                    pot = i == 0 ? (j == 0 ? v00 : v01) : (j == 0 ? v10 : v11);
+                } else if (j == 0 && !fineTop) {
+                    pot = v00 + (v10 - v00) * fx;
+                } else if (j == REFINE && !fineBottom) {
+                    pot = v01 + (v11 - v01) * fx;
+                } else if (i == 0 && !fineLeft) {
+                    pot = v00 + (v01 - v00) * fy;
+                } else if (i == REFINE && !fineRight) {
+                    pot = v10 + (v11 - v10) * fy;
+                } else {
+                    pot = sampler.sample(getX(c) + i * step, getY(r) + j * step);
+                }
+                cell[j * (REFINE + 1) + i] = pot;
+            }
+        }
+    }
+
+    //Checks if a cell exists and is refined
+    private boolean isRefined(int c, int r) {
+        return c >= 0 && r >= 0 && c < cols - 1 && r < rows - 1 && fine[r * (cols - 1) + c] != null;
+    }
+
+    //Returns the given number of levels, evenly spaced across the potentials
+    //    of the grid apart from the few closest to the charges
+    public double[] levels(int count) {
+        double[] sorted = new double[values.length];
+        int n = 0;
+        for (double pot : values) {
+            if (!Double.isNaN(pot) && !Double.isInfinite(pot)) {
+                sorted[n++] = pot;
+            }
+        }
+        double[] levels = new double[count];
+        if (n == 0) {
+            return new double[0];
+        }
+        Arrays.sort(sorted, 0, n);
+        double low = sorted[(int) (TAIL * (n - 1))];
+        double high = sorted[(int) ((1 - TAIL) * (n - 1))];
+        for (int k = 0; k < count; k++) {
+            levels[k] = low + (high - low) * (k + .5) / count;
+        }
+        return levels;
+    }
+
+    //Traces every level in parallel, returning null if the scene was cancelled.
+    //    One pass over the cells first lists, for every level, the cells it crosses.
+    public List<Polyline> extract(double[] levels, SceneSnapshot scene) {
+        double[] sorted = levels.clone();
+        Arrays.sort(sorted);
+        int count = sorted.length;
+        int[][] crossed = new int[count][16];
+        int[] sizes = new int[count];
+        for (int cell = 0; cell < lows.length; cell++) {
+            int k = Arrays.binarySearch(sorted, lows[cell]);
+            k = k < 0 ? -k - 1 : k + 1;
+            for (; k < count && sorted[k] <= highs[cell]; k++) {
+                if (sizes[k] == crossed[k].length) {
+                    crossed[k] = Arrays.copyOf(crossed[k], sizes[k] * 2);
+                }
+                crossed[k][sizes[k]++] = cell;
+            }
+        }
+
+        ArrayList<ArrayList<Polyline>> found = new ArrayList<>(Collections.nCopies(count, null));
+        ArrayList<RecursiveAction> tasks = new ArrayList<>();
+        for (int k = 0; k < count; k++) {
+            final int index = k;
+            tasks.add(new RecursiveAction() {
+
+                @Override
+                protected void compute() {
+                    if (!scene.isCancelled()) {
+                        found.set(index, extract(sorted[index], crossed[index], sizes[index]));
+                    }
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tasks);
+        if (scene.isCancelled()) {
+            return null;
+        }
+        ArrayList<Polyline> lines = new ArrayList<>();
+        for (ArrayList<Polyline> level : found) {
+            lines.addAll(level);
+        }
+        return lines;
+    }
+
+    //Finds the segments of one level in the listed cells and joins them into polylines
+    private ArrayList<Polyline> extract(double level, int[] crossed, int size) {
+        Segments segments = new Segments();
+        int cells = cols - 1;
+        for (int n = 0; n < size; n++) {
+            int r = crossed[n] / cells;
+            int c = crossed[n] % cells;
+            double[] cell = fine[crossed[n]];
+            if (cell == null) {
+                march(segments, level, c * REFINE, r * REFINE, REFINE,
+                        values[r * cols + c], values[r * cols + c + 1],
+                        values[(r + 1) * cols + c + 1], values[(r + 1) * cols + c]);
+            } else {
+                for (int j = 0; j < REFINE; j++) {
+                    for (int i = 0; i < REFINE; i++) {
+                        int k = j * (REFINE + 1) + i;
+                        march(segments, level, c * REFINE + i, r * REFINE + j, 1,
+                                cell[k], cell[k + 1], cell[k + REFINE + 2], cell[k + REFINE + 1]);
+                    }
+                }
+            }
+        }
+        return segments.join(level);
+    }
+
+    //Adds the segments of one square, given its corners clockwise from the top
+    //    left. The square starts at column i and row j of the fine lattice and
+    //    is size fine cells across.
+    private void march(Segments segments, double level, int i, int j, int size,
+            double a, double b, double c, double d) {
+        if (!(Math.abs(a) + Math.abs(b) + Math.abs(c) + Math.abs(d) < Double.POSITIVE_INFINITY)) {
+            return;
+        }
+        int index = (a >= level ? 1 : 0) | (b >= level ? 2 : 0)
+                | (c >= level ? 4 : 0) | (d >= level ? 8 : 0);
+        if (index == 0 || index == 15) {
+            return;
+        }
+
+        //Fraction of the way along each edge where the level crosses it, each
+        //    edge running towards larger coordinates
+        double top = (level - a) / (b - a);
+        double right = (level - b) / (c - b);
+        double bottom = (level - d) / (c - d);
+        double left = (level - a) / (d - a);
+        double x = i * FINE_STEP + .5;
+        double y = this.top + j * FINE_STEP + .5;
+        double width = size * FINE_STEP;
+        double mag = fieldScale * Math.hypot((b - a + c - d) / 2, (d - a + c - b) / 2) / width;
+
+        //Crossing points and the fine edges they lie on
+        double topX = x + width * top;
+        double rightY = y + width * right;
+        double bottomX = x + width * bottom;
+        double leftY = y + width * left;
+        long topKey = edgeKey(false, i + part(top, size), j);
+        long rightKey = edgeKey(true, i + size, j + part(right, size));
+        long bottomKey = edgeKey(false, i + part(bottom, size), j + size);
+        long leftKey = edgeKey(true, i, j + part(left, size));
+
+        switch (index) {
+            case 1:
+            case 14:
+                segments.add(topX, y, topKey, x, leftY, leftKey, mag);
+                break;
+            case 2:
+            case 13:
+                segments.add(topX, y, topKey, x + width, rightY, rightKey, mag);
+                break;
+            case 3:
+            case 12:
+                segments.add(x, leftY, leftKey, x + width, rightY, rightKey, mag);
+                break;
+            case 4:
+            case 11:
+                segments.add(x + width, rightY, rightKey, bottomX, y + width, bottomKey, mag);
+                break;
+            case 6:
+            case 9:
+                segments.add(topX, y, topKey, bottomX, y + width, bottomKey, mag);
+                break;
+            case 7:
+            case 8:
+                segments.add(x, leftY, leftKey, bottomX, y + width, bottomKey, mag);
+                break;
+            default:
+
+                //Saddle, resolved by the value at the center
+                boolean centerAbove = (a + b + c + d) / 4 >= level;
+                if ((index == 5) == centerAbove) {
+                    segments.add(topX, y, topKey, x + width, rightY, rightKey, mag);
+                    segments.add(x, leftY, leftKey, bottomX, y + width, bottomKey, mag);
+                } else {
+                    segments.add(topX, y, topKey, x, leftY, leftKey, mag);
+                    segments.add(x + width, rightY, rightKey, bottomX, y + width, bottomKey, mag);
+                }
+        }
+    }
+
+    //Returns which of the fine edges along a longer edge holds the crossing
+    private static int part(double fraction, int size) {
+        return Math.max(0, Math.min(size - 1, (int) (fraction * size)));
+    }
+
+    //Returns a key naming one edge of the fine lattice, from its first point
+    private static long edgeKey(boolean vertical, int i, int j) {
+        return (long) j << 32 | (long) i << 1 | (vertical ? 1 : 0);
+    }
+
+    //Returns the x dimension of a column of points
+    private double getX(int c) {
+        return c * SPACING + .5;
+    }
+
+    //Returns the y dimension of a row of points
+    private double getY(int r) {
+        return top + r * SPACING + .5;
+    }
+
+    //Holds the loose segments of one level and joins them end to end
+    private static class Segments {
+
+        private double[] coords = new double[256];  //x1, y1, x2, y2 of each segment
+        private long[] keys = new long[128];        //Fine edge under each end
+        private float[] mags = new float[64];       //Field magnitude along each segment
+        private int size = 0;
+
+        private void add(double x1, double y1, long key1, double x2, double y2, long key2,
+                double mag) {
+            if (size == mags.length) {
+                coords = Arrays.copyOf(coords, coords.length * 2);
+                keys = Arrays.copyOf(keys, keys.length * 2);
+                mags = Arrays.copyOf(mags, mags.length * 2);
+            }
+            coords[4 * size] = x1;
+            coords[4 * size + 1] = y1;
+            coords[4 * size + 2] = x2;
+            coords[4 * size + 3] = y2;
+            keys[2 * size] = key1;
+            keys[2 * size + 1] = key2;
+            mags[size] = (float) mag;
+            size++;
+        }
+
+        //Joins the segments into polylines labelled with the level
+        private ArrayList<Polyline> join(double level) {
+
+            //Links every end to the end of the segment which shares its edge,
+            //    through an open addressed table of the ends seen so far
+            int[] next = new int[2 * size];
+            Arrays.fill(next, -1);
+            int capacity = Integer.highestOneBit(Math.max(4, 4 * size)) * 2;
+            int[] table = new int[capacity];
+            Arrays.fill(table, -1);
+            for (int end = 0; end < 2 * size; end++) {
+                long key = keys[end];
+                int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & (capacity - 1);
+                while (table[slot] >= 0 && (keys[table[slot]] != key || next[table[slot]] >= 0)) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                if (table[slot] < 0) {
+                    table[slot] = end;
+                } else {
+                    next[end] = table[slot];
+                    next[table[slot]] = end;
+                }
+            }
+            ArrayList<Polyline> lines = new ArrayList<>();
+            boolean[] used = new boolean[size];
+            for (int s = 0; s < size; s++) {
+                if (used[s]) {
+                    continue;
+                }
+
+                //Walks back to the start of an open line, or once round a closed one
+                int end = 2 * s;
+                while (next[end] >= 0 && next[end] / 2 != s) {
+                    end = (next[end] ^ 1);
+                }
+                if (next[end] >= 0) {
+                    end = 2 * s;
+                }
+
+                Polyline line = new Polyline();
+                line.setLabel(level);
+                line.moveTo(coords[2 * end], coords[2 * end + 1]);
+                double length = 0;
+                int start = end;
+                while (true) {
+                    int segment = end / 2;
+                    used[segment] = true;
+                    int far = end ^ 1;
+                    length += Math.hypot(coords[2 * far] - coords[2 * end],
+                            coords[2 * far + 1] - coords[2 * end + 1]);
+                    line.lineTo(coords[2 * far], coords[2 * far + 1], mags[segment]);
+                    end = next[far];
+                    if (end < 0 || end == start || used[end / 2]) {
+                        break;
+                    }
+                }
+                if (length >= LABEL_LENGTH) {
+                    placeLabel(line, length);
+                }
+                lines.add(line);
+            }
+            return lines;
+        }
+
+        //Places the label of a line at the point halfway along it
+        private static void placeLabel(Polyline line, double length) {
+            double travelled = 0;
+            for (int i = 1; i < line.size(); i++) {
+                travelled += Math.hypot(line.getX(i) - line.getX(i - 1),
+                        line.getY(i) - line.getY(i - 1));
+                if (travelled >= length / 2) {
+                    line.setLabelPosition(line.getX(i), line.getY(i));
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class finds the object drawn under the mouse without looking at every
+    object. The outline of each object is cut into short chunks, and the box
+    around each chunk is listed in every square cell it covers, so a query
+    only measures the few chunks listed in the cells around the point.
+*/
+
+package emfields.EMObjects;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+public class ObjectIndex {
+
+    //Width of a cell
+    private static final int CELL = 32;
+
+    //Most points in a chunk of an outline
+    private static final int CHUNK = 8;
+
+    //Chunks listed in each occupied cell, by cell key
+    private final HashMap<Long, ArrayList<Chunk>> cells = new HashMap<>();
+
+    //Indexed outline of every object
+    private final HashMap<EMObj, Entry> entries = new HashMap<>();
+
+    //Brings the index up to date with the outlines of the objects, dropping
+    //    any indexed object which is no longer in the list
+    public void refresh(List<EMObj> objects) {
+        if (entries.size() > objects.size()) {
+            HashSet<EMObj> kept = new HashSet<>(objects);
+            for (EMObj object : new ArrayList<>(entries.keySet())) {
+                if (!kept.contains(object)) {
+                    remove(object);
+                }
+            }
+        }
+        for (EMObj object : objects) {
+            update(object);
+        }
+    }
+
+    //Indexes the current outline of an object, if it has changed
+    public void update(EMObj object) {
+        Polyline outline = object.getOutline();
+        Entry entry = entries.get(object);
+        if (entry != null && entry.outline == outline
+                && entry.size == (outline == null ? 0 : outline.size())) {
+            return;
+        }
+        remove(object);
+        if (outline == null || outline.size() == 0) {
+            return;
+        }
+        entry = new Entry(outline);
+        entries.put(object, entry);
+        for (int start = 0; start < outline.size(); start += CHUNK) {
+            Chunk chunk = new Chunk(object, outline, start,
+                    Math.min(start + CHUNK, outline.size() - 1));
+            int colMin = Math.floorDiv((int) Math.floor(chunk.xMin), CELL);
+            int colMax = Math.floorDiv((int) Math.floor(chunk.xMax), CELL);
+            int rowMin = Math.floorDiv((int) Math.floor(chunk.yMin), CELL);
+            int rowMax = Math.floorDiv((int) Math.floor(chunk.yMax), CELL);
+            for (int col = colMin; col <= colMax; col++) {
+                for (int row = rowMin; row <= rowMax; row++) {
+                    long key = key(col, row);
+                    ArrayList<Chunk> list = cells.get(key);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        cells.put(key, list);
+                    }
+                    list.add(chunk);
+                    entry.keys.add(key);
+                }
+            }
+        }
+    }
+
+    //Takes an object out of the index
+    public void remove(EMObj object) {
+        Entry entry = entries.remove(object);
+        if (entry == null) {
+            return;
+        }
+        for (long key : entry.keys) {
+            ArrayList<Chunk> list = cells.get(key);
+            if (list != null) {
+                for (Iterator<Chunk> it = list.iterator(); it.hasNext();) {
+                    if (it.next().owner == object) {
+                        it.remove();
+                    }
+                }
+                if (list.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    //Returns the object whose outline passes closest to a point, within the
+    //    radius, or null if there is none
+    public EMObj find(double xDim, double yDim, double radius) {
+        EMObj found = null;
+        double best = radius * radius;
+        int colMin = Math.floorDiv((int) Math.floor(xDim - radius), CELL);
+        int colMax = Math.floorDiv((int) Math.floor(xDim + radius), CELL);
+        int rowMin = Math.floorDiv((int) Math.floor(yDim - radius), CELL);
+        int rowMax = Math.floorDiv((int) Math.floor(yDim + radius), CELL);
+        for (int col = colMin; col <= colMax; col++) {
+            for (int row = rowMin; row <= rowMax; row++) {
+                ArrayList<Chunk> list = cells.get(key(col, row));
+                if (list == null) {
+                    continue;
+                }
+                for (Chunk chunk : list) {
+                    if (chunk.boxDistanceSq(xDim, yDim) >= best) {
+                        continue;
+                    }
+                    double distSq = chunk.distanceSq(xDim, yDim);
+                    if (distSq < best) {
+                        best = distSq;
+                        found = chunk.owner;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    //Returns the number of objects in the index
+    public int size() {
+        return entries.size();
+    }
+
+    private static long key(int col, int row) {
+        return (long) col << 32 | (row & 0xFFFFFFFFL);
+    }
+
+    //Outline of an object as it was indexed, and the cells it was listed in
+    private static class Entry {
+
+        private final Polyline outline;
+        private final int size;
+        private final HashSet<Long> keys = new HashSet<>();
+
+        private Entry(Polyline outline) {
+            this.outline = outline;
+            this.size = outline.size();
+        }
+    }
+
+    //Run of points of an outline, from start to end inclusive
+    private static class Chunk {
+
+        private final EMObj owner;
+        private final Polyline outline;
+        private final int start;
+        private final int end;
+        private float xMin = Float.POSITIVE_INFINITY;
+        private float yMin = Float.POSITIVE_INFINITY;
+        private float xMax = Float.NEGATIVE_INFINITY;
+        private float yMax = Float.NEGATIVE_INFINITY;
+
+        private Chunk(EMObj owner, Polyline outline, int start, int end) {
+            this.owner = owner;
+            this.outline = outline;
+            this.start = start;
+            this.end = end;
+            for (int i = start; i <= end; i++) {
+                xMin = Math.min(xMin, outline.getX(i));
+                yMin = Math.min(yMin, outline.getY(i));
+                xMax = Math.max(xMax, outline.getX(i));
+                yMax = Math.max(yMax, outline.getY(i));
+            }
+        }
+
+        //Returns the squared distance from a point to the box around the chunk
+        private double boxDistanceSq(double xDim, double yDim) {
+            double xDif = Math.max(0, Math.max(xMin - xDim, xDim - xMax));
+            double yDif = Math.max(0, Math.max(yMin - yDim, yDim - yMax));
+            return xDif * xDif + yDif * yDif;
+        }
+
+        //Returns the squared distance from a point to the points and
+        //    segments of the chunk
+        private double distanceSq(double xDim, double yDim) {
+            double best = Double.POSITIVE_INFINITY;
+            for (int i = start; i <= end; i++) {
+                double xDif = xDim - outline.getX(i);
+                double yDif = yDim - outline.getY(i);
+                best = Math.min(best, xDif * xDif + yDif * yDif);
+                if (i > start && !outline.startsPiece(i)) {
+                    double xSeg = outline.getX(i) - outline.getX(i - 1);
+                    double ySeg = outline.getY(i) - outline.getY(i - 1);
+                    double lengthSq = xSeg * xSeg + ySeg * ySeg;
+                    double t = lengthSq > 0
+                            ? ((xDim - outline.getX(i - 1)) * xSeg
+                            + (yDim - outline.getY(i - 1)) * ySeg) / lengthSq : 0;
+                    if (t > 0 && t < 1) {
+                        double xNear = xDim - outline.getX(i - 1) - t * xSeg;
+                        double yNear = yDim - outline.getY(i - 1) - t * ySeg;
+                        best = Math.min(best, xNear * xNear + yNear * yNear);
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class stores the traced points of a Field Line or Equipotential Line so
+    that the curve only has to be traced again when the scene changes. Every
+    point keeps the field magnitude it was traced with, which sets its color.
+*/
+
+package emfields.EMObjects;
+
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Graphics;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class Polyline {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    //Coordinates of the points, and the field magnitude of the segment ending
+    //    at each point. A NaN magnitude starts a new piece of the curve.
+    private float[] xs;
+    private float[] ys;
+    private float[] mags;
+    private int size = 0;
+
+    //Describes the scene the points were traced in
+    private int version = -1;
+    private int width;
+    private int height;
+    private int top;
+    private int bottom;
+    private boolean pointCharge;
+    private boolean preview;    //Flags if the points are only a coarse preview
+
+    //Segments gathered by color for drawing, made when first drawn
+    private volatile PolylineBatch batch;
+
+    //Value which can be stored alongside the points, such as a potential
+    private double label;
+    private String labelText;   //Label as it is drawn, made when first drawn
+    private float labelX = Float.NaN;   //Where the value should be drawn
+    private float labelY = Float.NaN;   //Where the value should be drawn
+
+    //Initializes an empty Polyline
+    public Polyline() {
+        this(INITIAL_CAPACITY);
+    }
+
+    //Initializes an empty Polyline with room for the given number of points
+    public Polyline(int capacity) {
+        xs = new float[Math.max(capacity, 1)];
+        ys = new float[Math.max(capacity, 1)];
+        mags = new float[Math.max(capacity, 1)];
+    }
+
+    //Removes all of the points
+    public void reset() {
+        size = 0;
+        batch = null;
+    }
+
+    //Drops every point after the first count
+    public void truncate(int count) {
+        size = Math.max(0, Math.min(size, count));
+        batch = null;
+    }
+
+    //Starts a new piece of the curve at the point
+    public void moveTo(double xDim, double yDim) {
+        append(xDim, yDim, Float.NaN);
+    }
+
+    //Adds a segment from the previous point to this point
+    public void lineTo(double xDim, double yDim, double mag) {
+        append(xDim, yDim, (float) mag);
+    }
+
+    private void append(double xDim, double yDim, float mag) {
+        if (size == xs.length) {
+            int capacity = xs.length * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            mags = Arrays.copyOf(mags, capacity);
+        }
+        xs[size] = (float) xDim;
+        ys[size] = (float) yDim;
+        mags[size] = mag;
+        size++;
+        batch = null;
+    }
+
+    //Records the scene the points were traced in
+    public void stamp(SceneSnapshot scene) {
+        this.version = scene.getCharges().getVersion();
+        this.width = scene.getWidth();
+        this.height = scene.getHeight();
+        this.top = scene.getTop();
+        this.bottom = scene.getBottom();
+        this.pointCharge = scene.isPointCharge();
+        this.preview = scene.isPreview();
+    }
+
+    //Checks if the points were traced in the given scene, with at least the
+    //    precision it asks for
+    public boolean matches(SceneSnapshot scene) {
+        return version == scene.getCharges().getVersion() && width == scene.getWidth()
+                && height == scene.getHeight() && top == scene.getTop()
+                && bottom == scene.getBottom() && pointCharge == scene.isPointCharge()
+                && (!preview || scene.isPreview());
+    }
+
+    //Draws the segments, colored by the field magnitude, one path for each
+    //    band of the gradient
+    public void paint(Graphics g, double colorConst) {
+        PolylineBatch drawn = batch;
+        if (drawn == null || drawn.getColorConst() != colorConst) {
+            drawn = new PolylineBatch(Collections.singletonList(this), colorConst);
+            batch = drawn;
+        }
+        drawn.paint(g);
+    }
+
+    //Returns the number of points
+    public int size() {
+        return size;
+    }
+
+    //Returns the x dimension of a point
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    //Returns the y dimension of a point
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    //Returns the field magnitude of the segment ending at a point
+    public float getMag(int index) {
+        return mags[index];
+    }
+
+    //Checks if a point starts a new piece of the curve
+    public boolean startsPiece(int index) {
+        return Float.isNaN(mags[index]);
+    }
+
+    //Returns the value stored alongside the points
+    public double getLabel() {
+        return label;
+    }
+
+    //Sets the value stored alongside the points
+    public void setLabel(double label) {
+        this.label = label;
+        this.labelText = null;
+    }
+
+    //Returns the stored value as a potential to two places, as it is drawn
+    public String getLabelText() {
+        String text = labelText;
+        if (text == null) {
+            text = (int) (-label * 100) / 100. + " ";
+            labelText = text;
+        }
+        return text;
+    }
+
+    //Returns the x dimension at which the label should be drawn, NaN if none
+    public float getLabelX() {
+        return labelX;
+    }
+
+    //Returns the y dimension at which the label should be drawn, NaN if none
+    public float getLabelY() {
+        return labelY;
+    }
+
+    //Sets where the label should be drawn
+    public void setLabelPosition(double xDim, double yDim) {
+        this.labelX = (float) xDim;
+        this.labelY = (float) yDim;
+    }
+
+    //Returns the approximate memory used by the points, and by the paths
+    //    they are drawn from once they have been drawn
+    public long bytes() {
+        PolylineBatch drawn = batch;
+        return 64 + 12L * xs.length + (drawn != null ? drawn.bytes() : 0);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class gathers the segments of traced curves into one path for each band
+    of the field line gradient, so the curves are drawn with a call per band
+    instead of a call and a color change per segment. Segments in a row which
+    fall in the same band are joined into a single run of the path. When
+    antialiasing is on the paths are stroked with round joins.
+*/
+
+package emfields.EMObjects;
+
+import java.awt.BasicStroke;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.Path2D;
+import java.util.List;
+
+class PolylineBatch {
+
+    //Stroke for antialiased paths, rounding the corners where runs turn
+    private static final BasicStroke SMOOTH_STROKE
+            = new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND);
+
+    private final double colorConst;    //Scales the magnitudes into the gradient
+    private final Path2D.Float[] paths = new Path2D.Float[RenderResources.GRADIENT_BANDS];
+    private long points = 0;            //Points added to all of the paths
+
+    //Gathers the segments of the lines, colored with the given scale
+    PolylineBatch(List<Polyline> lines, double colorConst) {
+        this.colorConst = colorConst;
+        for (Polyline line : lines) {
+            add(line);
+        }
+        for (Path2D.Float path : paths) {
+            if (path != null) {
+                path.trimToSize();
+            }
+        }
+    }
+
+    //Adds every segment of a line to the path of its band
+    private void add(Polyline line) {
+        int band = -1;  //Band of the run being added to, -1 if none
+        for (int i = 1; i < line.size(); i++) {
+            if (line.startsPiece(i)) {
+                band = -1;
+                continue;
+            }
+            int next = RenderResources.gradientBand(line.getMag(i) * colorConst);
+            Path2D.Float path = paths[next];
+            if (path == null) {
+                path = new Path2D.Float();
+                paths[next] = path;
+            }
+            if (next != band) {
+                path.moveTo((int) line.getX(i - 1), (int) line.getY(i - 1));
+                points++;
+                band = next;
+            }
+            path.lineTo((int) line.getX(i), (int) line.getY(i));
+            points++;
+        }
+    }
+
+    //Draws the path of every band in its color
+    void paint(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g;
+        Stroke stroke = null;   //Stroke to restore, null if unchanged
+        if (g2.getRenderingHint(RenderingHints.KEY_ANTIALIASING) == RenderingHints.VALUE_ANTIALIAS_ON) {
+            stroke = g2.getStroke();
+            g2.setStroke(SMOOTH_STROKE);
+        }
+        for (int band = 0; band < paths.length; band++) {
+            if (paths[band] != null) {
+                g2.setColor(RenderResources.bandColor(band));
+                g2.draw(paths[band]);
+            }
+        }
+        if (stroke != null) {
+            g2.setStroke(stroke);
+        }
+    }
+
+    //Returns the scale the magnitudes were colored with
+    double getColorConst() {
+        return colorConst;
+    }
+
+    //Returns the approximate memory used by the paths, each point taking two
+    //    floats and a segment type once the paths are trimmed
+    long bytes() {
+        long bytes = 32 + 4L * paths.length;
+        for (Path2D.Float path : paths) {
+            if (path != null) {
+                bytes += 64;
+            }
+        }
+        return bytes + 9 * points;
+    }
+}
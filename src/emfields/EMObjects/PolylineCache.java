@@ -0,0 +1,141 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class holds the traced Polylines of the objects in one scene, so each
+    panel or render keeps its own curves. When the curves take up more memory
+    than the budget allows, the least recently used curves are dropped,
+    starting with those of objects no longer in the scene, such as a curve
+    finished by a trace which was still running when its object was removed.
+
+A curve dropped while its object is still in the scene is marked as evicted.
+    Its object is not drawn and does not count as stale, so the panel does
+    not retrace it straight away and drop another curve in turn; it is traced
+    again the next time the scene is computed.
+*/
+
+package emfields.EMObjects;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class PolylineCache {
+
+    //Default memory budget for all of the cached points
+    public static final long DEFAULT_BUDGET = 16L * 1024 * 1024;
+
+    //Access ordered, so the first entry is always the least recently used
+    private final LinkedHashMap<EMObj, Entry> lines = new LinkedHashMap<>(16, .75f, true);
+    private final HashSet<EMObj> live = new HashSet<>();    //Objects in the scene
+    private final HashSet<EMObj> evicted = new HashSet<>(); //Live objects whose curves were dropped
+
+    private long budget;    //Maximum bytes the cached curves may use
+    private long used = 0;  //Bytes the cached curves used when last counted
+
+    //Initializes the cache with a memory budget in bytes
+    public PolylineCache(long budget) {
+        this.budget = budget;
+    }
+
+    //Returns the cached curve of an object, or null if it has none, counting
+    //    any paths it has been drawn from since it was last seen
+    public synchronized Polyline get(EMObj owner) {
+        Entry entry = lines.get(owner);
+        if (entry == null) {
+            return null;
+        }
+        long bytes = entry.line.bytes();
+        if (bytes != entry.bytes) {
+            used += bytes - entry.bytes;
+            entry.bytes = bytes;
+            trim(owner);
+        }
+        return entry.line;
+    }
+
+    //Stores the curve of an object in place of its old one, dropping the
+    //    least recently used curves if over budget
+    public synchronized void put(EMObj owner, Polyline line) {
+        Entry entry = new Entry(line);
+        Entry old = lines.put(owner, entry);
+        if (old != null) {
+            used -= old.bytes;
+        }
+        used += entry.bytes;
+        evicted.remove(owner);
+        trim(owner);
+    }
+
+    //Drops the curve of an object, so it is traced again
+    public synchronized void remove(EMObj owner) {
+        Entry old = lines.remove(owner);
+        if (old != null) {
+            used -= old.bytes;
+        }
+        evicted.remove(owner);
+    }
+
+    //Marks exactly the given objects as the live objects of the scene, so
+    //    the curves of other objects are dropped first
+    public synchronized void retain(Collection<? extends EMObj> objects) {
+        live.clear();
+        live.addAll(objects);
+        evicted.retainAll(live);
+        trim(null);
+    }
+
+    //Checks if the curve of a live object was dropped to fit the budget
+    public synchronized boolean isEvicted(EMObj owner) {
+        return evicted.contains(owner);
+    }
+
+    //Changes the memory budget in bytes
+    public synchronized void setBudget(long budget) {
+        this.budget = budget;
+        trim(null);
+    }
+
+    //Returns the memory budget in bytes
+    public synchronized long getBudget() {
+        return budget;
+    }
+
+    //Returns the bytes the cached curves use, as of when each was last seen
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    //Drops the least recently used curves of objects which are not live,
+    //    then those of live objects, until the cache fits its budget
+    private void trim(EMObj keep) {
+        for (int pass = 0; pass < 2 && used > budget; pass++) {
+            Iterator<Map.Entry<EMObj, Entry>> it = lines.entrySet().iterator();
+            while (used > budget && it.hasNext()) {
+                Map.Entry<EMObj, Entry> eldest = it.next();
+                EMObj owner = eldest.getKey();
+                boolean isLive = live.contains(owner);
+                if (owner != keep && (pass == 1 || !isLive)) {
+                    used -= eldest.getValue().bytes;
+                    it.remove();
+                    if (isLive) {
+                        evicted.add(owner);
+                    }
+                }
+            }
+        }
+    }
+
+    //A cached curve and the bytes it used when last seen
+    private static class Entry {
+
+        private final Polyline line;
+        private long bytes;
+
+        private Entry(Polyline line) {
+            this.line = line;
+            this.bytes = line.bytes();
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class shades the open area of the panel by electric potential. The map
+    is drawn progressively: first one sample per 8x8 block, then each finer
+    level adds the samples in between, down to one per pixel. A new sample
+    whose surrounding coarser samples are all close in shade is interpolated
+    from them, so the charges are only summed where the potential changes
+    quickly or a charge is close by. Every level is split into tiles of rows
+    which are sampled in parallel, and each sample is turned into a colour by
+    a precomputed table. Areas held by positive charges shade blue and those
+    held by negative charges shade red. Line charges have no natural zero of
+    potential, so for them the shading is centered on the median potential of
+    the scene.
+*/
+
+package emfields.EMObjects;
+
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.PotentialSampler;
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class PotentialMap extends EMObj {
+
+    public static final int COARSE_BLOCK = 8;   //Block size of the first level drawn
+    private static final int TILE_ROWS = 32;    //Pixel rows sampled by one task
+
+    //Smallest potential at which the shading is half strength
+    private static final double LINE_SCALE = 3;     //For line charges
+    private static final double POINT_SCALE = 15;   //For point charges
+
+    //Samples across and down used to find the typical potential of the scene
+    private static final int PROBES = 16;
+
+    //Largest difference in shade between coarser samples which is interpolated
+    private static final double SMOOTH = 0.03;
+
+    //Table of colours, from strongest negative to strongest positive potential
+    private static final int[] COLORS = buildColors(new Color(92, 145, 255),
+            new Color(255, 140, 140), 170);
+
+    private final int top;      //Height of the area above the map
+    private final int bottom;   //Height of the area below the map
+
+    private final BufferedImage[] buffers = new BufferedImage[2];  //Images drawn into in turn
+    private int next = 0;           //Buffer used by the next compute
+    private float[] samples;        //Potential at every sampled pixel
+    private boolean[] near;         //Flags coarse blocks which are close to a charge
+    private double center;          //Potential shaded as zero
+    private Runnable progress;      //Called each time a finer level is finished
+
+    private volatile BufferedImage image;   //Last published map
+    private volatile int block = 0;         //Block size of the last published level
+
+    //Initializes a map covering the panel apart from the top and bottom menus
+    public PotentialMap(int top, int bottom) {
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    //Builds a colour table which fades through transparent at zero potential
+    private static int[] buildColors(Color negative, Color positive, int alpha) {
+        int[] colors = new int[256];
+        for (int i = 0; i < 256; i++) {
+            double t = i / 127.5 - 1;
+            Color c = t < 0 ? negative : positive;
+            int a = (int) Math.round(Math.abs(t) * alpha);
+            colors[i] = a << 24 | c.getRGB() & 0xffffff;
+        }
+        return colors;
+    }
+
+    //Returns the shade of a potential, between -1 and 1
+    private static double shade(double pot, double scale) {
+        return pot / (Math.abs(pot) + scale);
+    }
+
+    //Returns the colour of a potential
+    private static int color(double pot, double scale) {
+        if (Double.isNaN(pot)) {
+            return COLORS[128];
+        }
+        if (Double.isInfinite(pot)) {
+            return COLORS[pot < 0 ? 0 : 255];
+        }
+        int i = (int) ((shade(pot, scale) + 1) * 127.5);
+        return COLORS[Math.max(0, Math.min(255, i))];
+    }
+
+    //Samples the map for the scene, level by level, keeping every sample
+    //    relative to the center potential
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        this.pointCharge = scene.isPointCharge();
+        int width = scene.getWidth();
+        int height = scene.getHeight() - top - bottom;
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+
+        BufferedImage buffer = buffers[next];
+        if (buffer == null || buffer.getWidth() != width || buffer.getHeight() != height) {
+            buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            buffers[next] = buffer;
+        }
+        if (samples == null || samples.length != width * height) {
+            samples = new float[width * height];
+        }
+        markCharges(scene.getCharges(), width, height);
+        int[] pixels = ((DataBufferInt) buffer.getRaster().getDataBuffer()).getData();
+        PotentialSampler sampler = new PotentialSampler(scene.getCharges(),
+                pointCharge, 1);
+        double scale = calibrate(sampler, width, height);
+
+        for (int level = COARSE_BLOCK; level >= 1; level /= 2) {
+            if (!fill(scene, sampler, pixels, width, height, level, scale)) {
+                return;
+            }
+            if (level == COARSE_BLOCK) {
+                image = buffer;
+                next = 1 - next;
+            }
+            block = level;
+            if (level > 1 && progress != null) {
+                progress.run();
+            }
+        }
+    }
+
+    //Sets the potential shaded as zero and returns the potential shaded at
+    //    half strength, from a sparse set of samples so busy scenes do not saturate
+    private double calibrate(PotentialSampler sampler, int width, int height) {
+        double[] probes = new double[PROBES * PROBES];
+        int count = 0;
+        for (int r = 0; r < PROBES; r++) {
+            for (int c = 0; c < PROBES; c++) {
+                double pot = sampler.sample((c + .5) * width / PROBES,
+                        top + (r + .5) * height / PROBES);
+                if (!Double.isNaN(pot) && !Double.isInfinite(pot)) {
+                    probes[count++] = pot;
+                }
+            }
+        }
+        Arrays.sort(probes, 0, count);
+        center = pointCharge || count == 0 ? 0 : probes[count / 2];
+        for (int i = 0; i < count; i++) {
+            probes[i] = Math.abs(probes[i] - center);
+        }
+        Arrays.sort(probes, 0, count);
+        double median = count > 0 ? probes[count / 2] : 0;
+        return Math.max(pointCharge ? POINT_SCALE : LINE_SCALE, median);
+    }
+
+    //Flags every coarse block within a block of a charge, where samples are never interpolated
+    private void markCharges(ChargeStore charges, int width, int height) {
+        int cols = (width + COARSE_BLOCK - 1) / COARSE_BLOCK;
+        int rows = (height + COARSE_BLOCK - 1) / COARSE_BLOCK;
+        if (near == null || near.length != cols * rows) {
+            near = new boolean[cols * rows];
+        } else {
+            Arrays.fill(near, false);
+        }
+        for (int i = 0; i < charges.size(); i++) {
+            int col = (int) Math.floor(charges.getX(i) / COARSE_BLOCK);
+            int row = (int) Math.floor((charges.getY(i) - top) / COARSE_BLOCK);
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                    near[r * cols + c] = true;
+                }
+            }
+        }
+    }
+
+    //Samples one level of the map in tiles of rows, returning false if cancelled
+    private boolean fill(SceneSnapshot scene, PotentialSampler sampler, int[] pixels,
+            int width, int height, int level, double scale) {
+        ArrayList<RecursiveAction> tiles = new ArrayList<>();
+        for (int y0 = 0; y0 < height; y0 += TILE_ROWS) {
+            final int first = y0;
+            final int last = Math.min(y0 + TILE_ROWS, height);
+            tiles.add(new RecursiveAction() {
+
+                @Override
+                protected void compute() {
+                    fillRows(scene, sampler, pixels, width, height, first, last, level, scale);
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tiles);
+        return !scene.isCancelled();
+    }
+
+    //Samples the blocks of one level which start within the given rows
+    private void fillRows(SceneSnapshot scene, PotentialSampler sampler, int[] pixels,
+            int width, int height, int first, int last, int level, double scale) {
+        float[] samples = this.samples;
+        boolean[] near = this.near;
+        int blocks = (width + COARSE_BLOCK - 1) / COARSE_BLOCK;
+        int coarser = level * 2;
+        for (int y = first; y < last; y += level) {
+            if (scene.isCancelled()) {
+                return;
+            }
+            boolean refining = level < COARSE_BLOCK;
+            int y0 = y - y % coarser;
+            int y1 = y0 + coarser;
+            int rows = Math.min(level, last - y);
+            for (int x = 0; x < width; x += level) {
+                int index = y * width + x;
+                float pot;
+                if (refining && y == y0 && x % coarser == 0) {
+                    pot = samples[index];
+                } else if (refining && y1 < height && x - x % coarser + coarser < width
+                        && !near[y / COARSE_BLOCK * blocks + x / COARSE_BLOCK]) {
+                    pot = (float) interpolate(sampler, samples, width, x, y,
+                            x - x % coarser, y0, coarser, scale);
+                    samples[index] = pot;
+                } else {
+                    pot = (float) (sampler.sample(x + .5, y + top + .5) - center);
+                    samples[index] = pot;
+                }
+                int color = color(pot, scale);
+                if (level == 1) {
+                    pixels[index] = color;
+                } else {
+                    int cols = Math.min(level, width - x);
+                    for (int r = 0; r < rows; r++) {
+                        int start = index + r * width;
+                        for (int c = 0; c < cols; c++) {
+                            pixels[start + c] = color;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    //Returns the potential at a point inside a square of coarser samples,
+    //    interpolating when the corners are close in shade
+    private double interpolate(PotentialSampler sampler, float[] samples, int width,
+            int x, int y, int x0, int y0, int size, double scale) {
+        int corner = y0 * width + x0;
+        double p00 = samples[corner];
+        double p10 = samples[corner + size];
+        double p01 = samples[corner + size * width];
+        double p11 = samples[corner + size * width + size];
+        double s00 = shade(p00, scale);
+        double s10 = shade(p10, scale);
+        double s01 = shade(p01, scale);
+        double s11 = shade(p11, scale);
+        double spread = Math.max(Math.max(s00, s10), Math.max(s01, s11))
+                - Math.min(Math.min(s00, s10), Math.min(s01, s11));
+        if (!(spread < SMOOTH)) {
+            return sampler.sample(x + .5, y + top + .5) - center;
+        }
+        double fx = (double) (x - x0) / size;
+        double fy = (double) (y - y0) / size;
+        return (p00 * (1 - fx) + p10 * fx) * (1 - fy) + (p01 * (1 - fx) + p11 * fx) * fy;
+    }
+
+    //Sets what is called each time a finer level of the map is finished
+    public void setProgress(Runnable progress) {
+        this.progress = progress;
+    }
+
+    //Returns the block size of the last finished level, or 0 before the first
+    public int getBlock() {
+        return block;
+    }
+
+    //Checks if no map has been finished yet
+    @Override
+    public boolean isStale(SceneSnapshot scene) {
+        return image == null;
+    }
+
+    //Draws the last published map
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        BufferedImage image = this.image;
+        if (image != null) {
+            g.drawImage(image, 0, top, null);
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "PotentialMap";
+    }
+
+    @Override
+    public int[] getDim() {
+        return new int[]{0, top, 0, bottom};
+    }
+}
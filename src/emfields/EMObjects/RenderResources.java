@@ -0,0 +1,139 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class holds the colors, strokes, fonts, cursors and images which are
+    drawn with every frame, so that painting the scene does not create them
+    over and over. The color gradient of the field lines is sampled once into
+    the colors of its bands, and each charge of rod is drawn once into a small image which
+    is then copied wherever a rod of that charge appears.
+*/
+
+package emfields.EMObjects;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Cursor;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Stroke;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+public class RenderResources {
+
+    //Scaled field magnitude at which the gradient reaches full red
+    private static final double GRADIENT_TOP = 200;
+
+    //Bands the gradient is split into for drawing curves in batches. The
+    //    last band holds only the full red past GRADIENT_TOP.
+    public static final int GRADIENT_BANDS = 32;
+    private static final Color[] BAND_COLORS = buildBands();
+
+    //Shared fonts, strokes and cursors
+    public static final Font LABEL_FONT = new Font("default", Font.BOLD, 12);
+    private static final Font SMALL_LABEL_FONT = LABEL_FONT.deriveFont(9f);
+    public static final Stroke ROD_STROKE = new BasicStroke((float) 1.5);
+    public static final Cursor HAND_CURSOR = Cursor.getPredefinedCursor(Cursor.HAND_CURSOR);
+    public static final Cursor DEFAULT_CURSOR = Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR);
+
+    //Colors of the rods, from the fill out to the rim
+    private static final Color[] POSITIVE_ROD = {new Color(92, 145, 255),
+        new Color(72, 125, 235), new Color(52, 105, 215), new Color(32, 85, 195)};
+    private static final Color[] NEGATIVE_ROD = {new Color(255, 140, 140),
+        new Color(235, 120, 120), new Color(215, 100, 100), new Color(195, 80, 80)};
+
+    //Half the width and height of a rod image
+    public static final int ROD_RADIUS = 12;
+
+    //Rod images already drawn, by charge and device scale
+    private static final HashMap<List<Double>, BufferedImage> rodSprites = new HashMap<>();
+
+    //Colors each band with the gradient of the field lines at its middle
+    private static Color[] buildBands() {
+        Color[] colors = new Color[GRADIENT_BANDS];
+        for (int i = 0; i < GRADIENT_BANDS - 1; i++) {
+            double colorMag = (i + .5) * GRADIENT_TOP / (GRADIENT_BANDS - 1);
+            if (colorMag < 200 / 1.5) {
+                colors[i] = new Color((int) (200 - colorMag * 1.5), (int) (200 - colorMag * 1.5), (int) (245 - colorMag / 4));
+            } else {
+                colors[i] = new Color((int) (colorMag - 200.0 / 2.0) * 2, 0, (int) (245 - colorMag / 4));
+            }
+        }
+        colors[GRADIENT_BANDS - 1] = new Color(255, 0, 0);
+        return colors;
+    }
+
+    //Returns the band of the gradient a scaled field magnitude falls in
+    public static int gradientBand(double colorMag) {
+        if (!(colorMag > 0)) {
+            return 0;
+        }
+        if (colorMag >= GRADIENT_TOP) {
+            return GRADIENT_BANDS - 1;
+        }
+        return (int) (colorMag * (GRADIENT_BANDS - 1) / GRADIENT_TOP);
+    }
+
+    //Returns the color a band of the gradient is drawn in
+    public static Color bandColor(int band) {
+        return BAND_COLORS[band];
+    }
+
+    //Returns the scale from the coordinates of the graphics to device pixels,
+    //    as the cached layers of the panel find it
+    public static double deviceScale(Graphics g) {
+        if (!(g instanceof Graphics2D)) {
+            return 1;
+        }
+        return Math.max(Math.abs(((Graphics2D) g).getTransform().getScaleX()), 1);
+    }
+
+    //Returns the image of a rod with the given charge, drawn at the given
+    //    device scale. Drawn 2 ROD_RADIUS wide, it is centered on the point
+    //    (ROD_RADIUS, ROD_RADIUS).
+    public static synchronized BufferedImage rodSprite(double charge, double scale) {
+        List<Double> key = Arrays.asList(charge, scale);
+        BufferedImage sprite = rodSprites.get(key);
+        if (sprite == null) {
+            int size = (int) Math.ceil(2 * ROD_RADIUS * scale);
+            sprite = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = sprite.createGraphics();
+            g.scale((double) size / (2 * ROD_RADIUS), (double) size / (2 * ROD_RADIUS));
+            drawRod(g, charge, ROD_RADIUS, ROD_RADIUS);
+            g.dispose();
+            rodSprites.put(key, sprite);
+        }
+        return sprite;
+    }
+
+    //Draws a rod with the given charge centered on a point
+    private static void drawRod(Graphics2D g, double charge, int xDim, int yDim) {
+        Color[] colors = charge > 0 ? POSITIVE_ROD : NEGATIVE_ROD;
+        g.setColor(colors[0]);
+        g.fillOval(xDim - 10, yDim - 10, 20, 20);
+        g.setStroke(ROD_STROKE);
+        g.setColor(colors[1]);
+        g.drawOval(xDim - 8, yDim - 8, 16, 16);
+        g.setColor(colors[2]);
+        g.drawOval(xDim - 9, yDim - 9, 18, 18);
+        g.setColor(colors[3]);
+        g.drawOval(xDim - 10, yDim - 10, 20, 20);
+        g.setColor(Color.black);
+        g.setFont(LABEL_FONT);
+
+        //Whole charges keep their usual place, others are centered in a smaller
+        //    font to two places
+        if (charge != Math.rint(charge)) {
+            String label = Double.toString(Math.round(charge * 100) / 100.);
+            g.setFont(SMALL_LABEL_FONT);
+            g.drawString(label, xDim - g.getFontMetrics().stringWidth(label) / 2, yDim + 4);
+        } else if (charge < 0) {
+            g.drawString(Long.toString((long) charge), xDim - 5, yDim + 5);
+        } else {
+            g.drawString(Long.toString((long) charge), xDim - 3, yDim + 5);
+        }
+    }
+}
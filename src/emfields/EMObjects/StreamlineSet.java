@@ -0,0 +1,383 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class draws a whole diagram of evenly spaced Field Lines at once, placed
+    in the manner of Jobard and Lefer. Lines are started around every charge
+    in proportion to its charge, then a set distance to either side of the
+    lines already drawn, and each line is cut off where it comes too close to
+    another. Candidate lines are traced in parallel batches, then accepted
+    one at a time against a grid of the points already drawn.
+*/
+
+package emfields.EMObjects;
+
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.DormandPrinceIntegrator;
+import emfields.EMPhysics.FieldKernel;
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Graphics;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class StreamlineSet extends EMObj {
+
+    public static final int DEFAULT_SEPARATION = 24;    //Default distance between lines
+    public static final int MIN_SEPARATION = 8;         //Closest the lines may be set
+    public final double COLOR_CONST = 2.75;             //Determines color gradient
+
+    //Constants relating to placing the lines
+    private static final double CUTOFF = .5;        //Closeness, as a part of the separation, which ends a line
+    private static final int SEEDS_PER_CHARGE = 4;  //Lines started around a charge per unit of charge
+    private static final double SEED_RADIUS = 12;   //Distance from a charge at which its lines start
+    private static final double STOP_RADIUS = 10;   //Distance from a charge at which a line ends
+    private static final double MAX_STEP = 3;       //Longest step taken while tracing
+    private static final int MAX_STEPS = 4000;      //Most steps taken on each side of a line
+    private static final int BATCH = 32;            //Candidate lines traced together
+
+    private final int separation;       //Distance kept between the lines
+    private final boolean chargeSeeds;  //Flags if lines are started around the charges
+    private final int top;              //Height of the area above the lines
+    private final int bottom;           //Height of the area below the lines
+
+    private volatile List<Polyline> lines = Collections.emptyList();  //Last finished lines
+    private volatile PolylineBatch batch;       //Every segment of the lines, by color
+    private volatile boolean computed = false;  //Flags if any lines have been finished
+
+    private long evaluations = 0;   //Field evaluations used by the last compute
+    private long steps = 0;         //Steps taken by the last compute
+
+    //Initializes a diagram covering the panel apart from the top and bottom menus
+    public StreamlineSet(int separation, boolean chargeSeeds, int top, int bottom) {
+        this.separation = Math.max(MIN_SEPARATION, separation);
+        this.chargeSeeds = chargeSeeds;
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    //Places and traces every line for the scene. A preview keeps the lines
+    //    twice as far apart.
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        this.pointCharge = scene.isPointCharge();
+        evaluations = 0;
+        steps = 0;
+        ChargeStore charges = scene.getCharges();
+        double spacing = scene.isPreview() ? 2 * separation : separation;
+        double cutoff = CUTOFF * spacing;
+        Occupancy taken = new Occupancy(scene.getWidth(), scene.getHeight(), spacing);
+
+        //Finds how far from each charge its own lines are too crowded to be
+        //    cut off, and starts its lines evenly around it
+        double[] clearance = new double[charges.size()];
+        double maxClearance = 0;
+        ArrayList<Seed> starts = new ArrayList<>();
+        Integer[] order = new Integer[charges.size()];
+        for (int j = 0; j < order.length; j++) {
+            order[j] = j;
+        }
+        if (chargeSeeds) {
+            Arrays.sort(order, new Comparator<Integer>() {
+
+                @Override
+                public int compare(Integer a, Integer b) {
+                    return Double.compare(Math.abs(charges.getCharge(b)), Math.abs(charges.getCharge(a)));
+                }
+            });
+        }
+        for (int j : order) {
+            int count = (int) Math.round(SEEDS_PER_CHARGE * Math.abs(charges.getCharge(j)));
+            clearance[j] = Math.max(SEED_RADIUS, count * cutoff / (2 * Math.PI));
+            maxClearance = Math.max(maxClearance, clearance[j]);
+            if (chargeSeeds) {
+                double gap = 2 * Math.PI * SEED_RADIUS / Math.max(count, 1);
+                for (int i = 0; i < count; i++) {
+                    double angle = 2 * Math.PI * (i + .5) / count;
+                    starts.add(new Seed(charges.getX(j) + SEED_RADIUS * Math.cos(angle),
+                            charges.getY(j) + SEED_RADIUS * Math.sin(angle), gap / 2));
+                }
+            }
+        }
+
+        //Covers the rest of the area in case no line reaches it
+        for (double y = top + spacing; y < scene.getHeight() - bottom; y += 2 * spacing) {
+            for (double x = spacing; x < scene.getWidth(); x += 2 * spacing) {
+                starts.add(new Seed(x, y, spacing));
+            }
+        }
+
+        ArrayList<Polyline> found = new ArrayList<>();
+        ArrayDeque<Seed> beside = new ArrayDeque<>();   //Seeds beside the accepted lines
+        int next = 0;
+        while (true) {
+            if (scene.isCancelled()) {
+                return;
+            }
+
+            //Gathers a batch of seeds which are clear of the accepted lines,
+            //    taking those beside the lines first
+            ArrayList<Candidate> batch = new ArrayList<>();
+            while (batch.size() < BATCH && (!beside.isEmpty() || next < starts.size())) {
+                Seed seed = !beside.isEmpty() ? beside.poll() : starts.get(next++);
+                if (inside(seed.xDim, seed.yDim, scene)
+                        && !charges.anyWithin(seed.xDim, seed.yDim, STOP_RADIUS)
+                        && !taken.anyWithin(seed.xDim, seed.yDim, seed.clear)) {
+                    batch.add(new Candidate(seed, scene));
+                }
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            ForkJoinTask.invokeAll(batch);
+            if (scene.isCancelled()) {
+                return;
+            }
+
+            //Accepts the lines in order, cutting each where it comes too close
+            //    to one accepted before it
+            for (Candidate candidate : batch) {
+                evaluations += candidate.evaluations;
+                steps += candidate.steps;
+                double length = 0;
+                for (Polyline side : candidate.sides) {
+                    int end = 0;
+                    while (end < side.size()) {
+                        float xDim = side.getX(end);
+                        float yDim = side.getY(end);
+                        int near = charges.nearest(xDim, yDim, maxClearance);
+                        if ((near < 0 || (xDim - charges.getX(near)) * (xDim - charges.getX(near))
+                                + (yDim - charges.getY(near)) * (yDim - charges.getY(near))
+                                > clearance[near] * clearance[near])
+                                && taken.anyWithin(xDim, yDim, cutoff)) {
+                            break;
+                        }
+                        if (end > 0) {
+                            length += Math.hypot(xDim - side.getX(end - 1), yDim - side.getY(end - 1));
+                        }
+                        end++;
+                    }
+                    side.truncate(end);
+                }
+                if (length < spacing) {
+                    continue;
+                }
+                for (Polyline side : candidate.sides) {
+                    for (int i = 0; i < side.size(); i++) {
+                        taken.add(side.getX(i), side.getY(i));
+                    }
+                    addBeside(side, spacing, beside);
+                    if (side.size() > 1) {
+                        found.add(side);
+                    }
+                }
+            }
+        }
+
+        batch = new PolylineBatch(found, COLOR_CONST);
+        lines = found;
+        computed = true;
+    }
+
+    //Adds seeds a separation to either side of a line, one a separation
+    //    along the line
+    private static void addBeside(Polyline side, double spacing, ArrayDeque<Seed> beside) {
+        double along = 0;
+        for (int i = 1; i < side.size(); i++) {
+            double xStep = side.getX(i) - side.getX(i - 1);
+            double yStep = side.getY(i) - side.getY(i - 1);
+            double length = Math.sqrt(xStep * xStep + yStep * yStep);
+            along += length;
+            if (along >= spacing && length > 0) {
+                along = 0;
+                double xNorm = -yStep / length * spacing;
+                double yNorm = xStep / length * spacing;
+                beside.add(new Seed(side.getX(i) + xNorm, side.getY(i) + yNorm, spacing));
+                beside.add(new Seed(side.getX(i) - xNorm, side.getY(i) - yNorm, spacing));
+            }
+        }
+    }
+
+    //Checks if a point lies in the area between the menus
+    private boolean inside(double xDim, double yDim, SceneSnapshot scene) {
+        return xDim > 0 && xDim < scene.getWidth() && yDim > top && yDim < scene.getHeight() - bottom;
+    }
+
+    //Checks if no lines have been finished yet
+    @Override
+    public boolean isStale(SceneSnapshot scene) {
+        return !computed;
+    }
+
+    //Draws every line of the last finished diagram
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        PolylineBatch batch = this.batch;
+        if (batch != null) {
+            batch.paint(g);
+        }
+    }
+
+    //Returns the distance kept between the lines
+    public int getSeparation() {
+        return separation;
+    }
+
+    //Returns whether lines are started around the charges
+    public boolean isChargeSeeds() {
+        return chargeSeeds;
+    }
+
+    //Returns the number of line pieces in the last finished diagram
+    public int getLineCount() {
+        return lines.size();
+    }
+
+    //Returns the number of field evaluations used by the last compute
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    //Returns the number of integration steps taken by the last compute
+    @Override
+    public long getSteps() {
+        return steps;
+    }
+
+    @Override
+    public String getType() {
+        return "StreamlineSet";
+    }
+
+    @Override
+    public int[] getDim() {
+        return new int[]{0, top, separation, bottom};
+    }
+
+    //Point a line may be started from, which must be clear of the accepted
+    //    lines by the given distance
+    private static class Seed {
+
+        private final double xDim;
+        private final double yDim;
+        private final double clear;
+
+        private Seed(double xDim, double yDim, double clear) {
+            this.xDim = xDim;
+            this.yDim = yDim;
+            this.clear = clear;
+        }
+    }
+
+    //Traces both sides of a line from a seed, on a worker of its own
+    private class Candidate extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Seed seed;
+        private final SceneSnapshot scene;
+        private final Polyline[] sides = {new Polyline(), new Polyline()};
+        private long evaluations;
+        private long steps;
+
+        private Candidate(Seed seed, SceneSnapshot scene) {
+            this.seed = seed;
+            this.scene = scene;
+        }
+
+        @Override
+        protected void compute() {
+            ChargeStore charges = scene.getCharges();
+            FieldKernel kernel = new FieldKernel();
+            DormandPrinceIntegrator integrator = new DormandPrinceIntegrator(
+                    DormandPrinceIntegrator.DEFAULT_TOLERANCE, .05, MAX_STEP);
+            for (int s = 0; s < 2; s++) {
+                int sign = s == 0 ? 1 : -1;
+                Polyline side = sides[s];
+                side.moveTo(seed.xDim, seed.yDim);
+                boolean flag = integrator.start(kernel, charges, pointCharge, seed.xDim, seed.yDim);
+                for (int i = 0; flag && i < MAX_STEPS; i++) {
+                    if (scene.isCancelled()) {
+                        return;
+                    }
+                    flag = integrator.step(kernel, charges, pointCharge, sign);
+                    double xDim = integrator.getX();
+                    double yDim = integrator.getY();
+                    if (!flag || !inside(xDim, yDim, scene)) {
+                        break;
+                    }
+                    side.lineTo(xDim, yDim, integrator.getMag());
+                    steps++;
+                    if (charges.anyWithin(xDim, yDim, STOP_RADIUS)) {
+                        break;
+                    }
+                }
+            }
+            evaluations = kernel.getEvaluations();
+        }
+    }
+
+    //Cells a separation wide holding the points of the accepted lines, so
+    //    the points near any point are found by looking at most nine cells
+    private static class Occupancy {
+
+        private final double cell;
+        private final int cols;
+        private final int rows;
+        private final int[] head;   //First point of each cell, -1 if empty
+        private int[] next = new int[1024];     //Next point in the same cell
+        private float[] xs = new float[1024];
+        private float[] ys = new float[1024];
+        private int size = 0;
+
+        private Occupancy(int width, int height, double cell) {
+            this.cell = cell;
+            cols = (int) (width / cell) + 1;
+            rows = (int) (height / cell) + 1;
+            head = new int[cols * rows];
+            Arrays.fill(head, -1);
+        }
+
+        private void add(double xDim, double yDim) {
+            int col = (int) (xDim / cell);
+            int row = (int) (yDim / cell);
+            if (col < 0 || row < 0 || col >= cols || row >= rows) {
+                return;
+            }
+            if (size == xs.length) {
+                next = Arrays.copyOf(next, size * 2);
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = (float) xDim;
+            ys[size] = (float) yDim;
+            next[size] = head[row * cols + col];
+            head[row * cols + col] = size;
+            size++;
+        }
+
+        //Checks if any point lies closer than the radius, which may not be
+        //    more than a cell, to a point
+        private boolean anyWithin(double xDim, double yDim, double radius) {
+            int col = (int) Math.floor(xDim / cell);
+            int row = (int) Math.floor(yDim / cell);
+            for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+                for (int c = Math.max(0, col - 1); c <= Math.min(cols - 1, col + 1); c++) {
+                    for (int i = head[r * cols + c]; i >= 0; i = next[i]) {
+                        double xDif = xs[i] - xDim;
+                        double yDif = ys[i] - yDim;
+                        if (xDif * xDif + yDif * yDif < radius * radius) {
+                            return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class fills the open area of the panel with a lattice of field vectors.
+    It is a single object: the field of the whole lattice is held in one
+    FieldGrid, and the arrows are copied from a GlyphAtlas. Arrow lengths
+    grow with the log of the field so both weak and strong regions show.
+*/
+
+package emfields.EMObjects;
+
+import emfields.EMPhysics.FieldGrid;
+import emfields.EMPhysics.SceneSnapshot;
+import java.awt.Graphics;
+
+public class VectorLattice extends EMObj {
+
+    public static final int DEFAULT_SPACING = 25;   //Default distance between arrows
+    public static final int MIN_SPACING = 8;        //Closest arrows may be placed
+
+    private final int spacing;  //Distance between arrows
+    private final int top;      //Height of the area above the lattice
+    private final int bottom;   //Height of the area below the lattice
+
+    private volatile FieldGrid grid;    //Last finished lattice, never changed once published
+    private long evaluations;           //Points evaluated by the last compute
+
+    //Initializes a lattice covering the panel apart from the top and bottom menus
+    public VectorLattice(int spacing, int top, int bottom) {
+        this.spacing = Math.max(MIN_SPACING, spacing);
+        this.top = top;
+        this.bottom = bottom;
+    }
+
+    //Calculates the field at every point of the lattice for the scene
+    @Override
+    public synchronized void compute(SceneSnapshot scene) {
+        double x0 = spacing / 2.0;
+        double y0 = top + spacing / 2.0;
+        int cols = Math.max(0, (int) ((scene.getWidth() - x0) / spacing) + 1);
+        int rows = Math.max(0, (int) ((scene.getHeight() - bottom - y0) / spacing) + 1);
+
+        FieldGrid next = new FieldGrid(x0, y0, spacing, cols, rows);
+        evaluations = 0;
+        if (next.evaluate(scene)) {
+            grid = next;
+            evaluations = (long) cols * rows;
+        }
+    }
+
+    //Returns the number of points evaluated by the last compute
+    @Override
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    //Checks if the lattice was not yet computed for the scene
+    @Override
+    public boolean isStale(SceneSnapshot scene) {
+        return grid == null;
+    }
+
+    //Draws an arrow at every point of the last finished lattice
+    @Override
+    public void paintObj(Graphics g, SceneSnapshot scene) {
+        FieldGrid grid = this.grid;
+        if (grid == null) {
+            return;
+        }
+        GlyphAtlas atlas = GlyphAtlas.forCell(spacing);
+        for (int r = 0; r < grid.getRows(); r++) {
+            double yDim = grid.getY(r);
+            for (int c = 0; c < grid.getCols(); c++) {
+                atlas.draw(g, grid.getX(c), yDim, grid.getEx(c, r), grid.getEy(c, r));
+            }
+        }
+    }
+
+    //Returns the distance between arrows
+    public int getSpacing() {
+        return spacing;
+    }
+
+    @Override
+    public String getType() {
+        return "VectorLattice";
+    }
+
+    @Override
+    public int[] getDim() {
+        return new int[]{0, top, spacing, bottom};
+    }
+}
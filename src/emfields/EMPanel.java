@@ -11,24 +11,36 @@ This class extends the JPanel, and is the main graphical interface for the field
 
 package emfields;
 
+import emfields.EMObjects.ContourSet;
 import emfields.EMObjects.EquiLine;
 import emfields.EMObjects.FieldLine;
 import emfields.EMObjects.GaussSurface;
 import emfields.EMObjects.EMVec;
 import emfields.EMObjects.EMObj;
 import emfields.EMObjects.EMRod;
+import emfields.EMObjects.ObjectIndex;
+import emfields.EMObjects.PolylineCache;
+import emfields.EMObjects.PotentialMap;
+import emfields.EMObjects.RenderResources;
+import emfields.EMObjects.StreamlineSet;
+import emfields.EMObjects.VectorLattice;
+import emfields.EMPhysics.ChargeStore;
+import emfields.EMPhysics.SceneSnapshot;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import javax.swing.*;
 
 public class EMPanel extends JPanel {
     
     //Constants which define various aspects of the EMPanel layout
-    private final int TOP_MENU_Y = 75;      //Height of the top menu
-    private final int BOTTOM_MENU_Y = 100;  //Height of the bottom menu
-    private final int GRID_SPACE = 30;      //Spacing between grid points
+    static final int TOP_MENU_Y = 75;       //Height of the top menu
+    static final int BOTTOM_MENU_Y = 100;   //Height of the bottom menu
+    private static final int GRID_SPACE = 30;   //Spacing between grid points
     private final Color BACKGROUND = new Color(245, 245, 250);  //Background color
+    private final Color MENU_BACKGROUND = new Color(230, 230, 235);
     
     //Various environment flags
     private boolean trash = false;  //Flags if cursor is holding node over trash
@@ -37,6 +49,7 @@ public class EMPanel extends JPanel {
     private boolean pointCharge = false;    //Flags if charges are point charges
     private boolean coordinates = false;    //Flags if coordinates should be displayed
     private boolean gaussExpl = false;      //Flags if the guassian explanation is displayed
+    private boolean antialiased = false;    //Flags if the traced lines are drawn smoothly
     private int gaussPage = 0;              //Gives the current page of the gauss explanation
     
     //Images for the trash can
@@ -49,8 +62,124 @@ public class EMPanel extends JPanel {
     private ArrayList<Image> gaussImg = new ArrayList<>();
     
     //Hold the different objects to be represented on the screen
-    private ArrayList<EMRod> rods = new ArrayList<>();
+    private ArrayList<EMRod> palette = new ArrayList<>();   //Source rods in the bottom menu
+    private ArrayList<EMRod> rods = new ArrayList<>();      //Rods placed in the scene
     private ArrayList<EMObj> objects = new ArrayList<>();
+    private VectorLattice lattice;  //Lattice of field vectors, null when hidden
+    private int latticeSpacing = VectorLattice.DEFAULT_SPACING;
+    private PotentialMap potentialMap;  //Shading by potential, null when hidden
+    private ContourSet contours;        //Evenly spaced equipotentials, null when hidden
+    private int contourLevels = ContourSet.DEFAULT_LEVELS;
+    private StreamlineSet streamlines;  //Evenly spaced field lines, null when hidden
+    private int streamlineSeparation = StreamlineSet.DEFAULT_SEPARATION;
+    
+    //Finds the object under the mouse from the shapes last drawn
+    private final ObjectIndex objectIndex = new ObjectIndex();
+
+    //Holds the traced lines of the objects in this panel
+    private final PolylineCache lineCache = new PolylineCache(PolylineCache.DEFAULT_BUDGET);
+    private int indexPublished = -1;    //Results published when the index was refreshed
+    private int indexObjects = -1;      //Object count when the index was refreshed
+    
+    //Holds the charges of the placed rods for the field calculations
+    private ChargeStore charges = new ChargeStore();
+    
+    //Computes the objects away from the Swing thread
+    private final ComputeScheduler scheduler = new ComputeScheduler(this);
+    private SceneSnapshot scene;    //Latest scene given to the scheduler
+
+    //Measures the computes, paints and frames, shown on request
+    private final FrameStats stats = new FrameStats();
+    private boolean statsShown = false;
+    
+    //Cached layers of the display, drawn from back to front
+    private final RenderLayer backgroundLayer = new RenderLayer(true) {
+
+        @Override
+        protected void render(Graphics2D g) {
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, getWidth(), getHeight());
+
+            //Draws the grid
+            if (grid) {
+                g.setColor(getForeground());
+                paintGrid(g, getWidth(), getHeight());
+            }
+
+            //Draws the trash
+            if (trashShown) {
+                g.drawImage(trashOpen, getWidth() - 72, getHeight() - 196, parent);
+            } else {
+                g.drawImage(trashClosed, getWidth() - 72, getHeight() - 196, parent);
+            }
+        }
+    };
+    private final RenderLayer overlayLayer = new RenderLayer(false) {
+
+        @Override
+        protected void render(Graphics2D g) {
+
+            //Draws the last results of all objects on the Panel
+            stale = false;
+            if (antialiased) {
+                g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            }
+            if (potentialMap != null) {
+                paintObject(potentialMap, g);
+            }
+            if (contours != null) {
+                paintObject(contours, g);
+            }
+            if (streamlines != null) {
+                paintObject(streamlines, g);
+            }
+            if (lattice != null) {
+                paintObject(lattice, g);
+            }
+            for (EMObj object : objects) {
+                if (object != overlaySurface) {
+                    paintObject(object, g);
+                }
+            }
+
+            //Draws the placed rods, apart from one being held
+            for (EMRod rod : rods) {
+                if (rod != overlayTemp) {
+                    rod.paintRods(g);
+                }
+            }
+        }
+    };
+    private final RenderLayer menuLayer = new RenderLayer(true) {
+
+        @Override
+        protected void render(Graphics2D g) {
+            g.translate(0, BOTTOM_MENU_Y - getHeight());
+            paintMenus(g);
+        }
+    };
+    
+    //State the cached layers were last drawn with
+    private boolean trashShown = false; //Flags if the background shows an open trash
+    private int overlayPublished;       //Results published when overlays were drawn
+    private int overlayObjects;         //Object count when overlays were drawn
+    private EMRod overlayTemp;          //Rod left out of the overlays
+    private GaussSurface overlaySurface;    //Surface being placed, left out of the overlays
+    private boolean stale = false;      //Flags if the overlays drew out of date results
+
+    //Coalesces the recomputes and repaints asked for by mouse events, so a
+    //    burst of events costs at most one of each per display frame
+    private final int FRAME_DELAY = 16;     //Milliseconds between frames
+    private final javax.swing.Timer frameTimer;
+    private boolean scenePending = false;   //Flags if the scene must be recomputed
+    private Rectangle dirty;                //Area to repaint, null if none
+    private boolean allDirty = false;       //Flags if everything must be repainted
+
+    //While a rod is dragged the scene is traced coarsely, and refined once
+    //    the rod is let go or has rested for a moment
+    private final int IDLE_DELAY = 200;     //Milliseconds a held rod rests before refining
+    private final javax.swing.Timer refineTimer;
+    private boolean previewing = false;     //Flags if the last compute was a preview
     
     //Used in handling the manipulation of EMRods
     private int tempInd;    //Stores the index of a held rod
@@ -104,15 +233,49 @@ public class EMPanel extends JPanel {
         //Initializes all source EMRods
         for (int i = 0; i < 18; i++) {
             if (i - 9 < 0) {
-                rods.add(new EMRod(i - 9, 40 * i + offset,
+                palette.add(new EMRod(i - 9, 40 * i + offset,
                         this.getHeight() - 50));
             } else {
-                rods.add(new EMRod(i - 8, 40 * i + offset,
+                palette.add(new EMRod(i - 8, 40 * i + offset,
                         this.getHeight() - 50));
             }
 
         }
 
+        scheduler.setStats(stats);
+        sceneChanged();
+
+        frameTimer = new javax.swing.Timer(FRAME_DELAY, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                flushFrame();
+            }
+        });
+        frameTimer.setRepeats(false);
+
+        refineTimer = new javax.swing.Timer(IDLE_DELAY, new ActionListener() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (previewing) {
+                    previewing = false;
+                    sceneChanged();
+                }
+            }
+        });
+        refineTimer.setRepeats(false);
+
+        //Shows or hides the frame statistics with F3
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "stats");
+        getActionMap().put("stats", new AbstractAction() {
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setStatsShown(!statsShown);
+            }
+        });
+
         //Handles the resizing of the Panel
         this.addComponentListener(new ComponentAdapter() {
 
@@ -122,16 +285,20 @@ public class EMPanel extends JPanel {
                 int offset = (getWidth() - 40 * 18) / 2;
                 for (int i = 0; i < 18; i++) {
                     if (i - 9 < 0) {
-                        rods.get(i).setDim(40 * i + offset,
+                        palette.get(i).setDim(40 * i + offset,
                                 getHeight() - 50);
                     } else {
-                        rods.get(i).setDim(40 * i + offset,
+                        palette.get(i).setDim(40 * i + offset,
                                 getHeight() - 50);
                     }
 
                 }
                 height = getHeight();
                 width = getWidth();
+                sceneChanged();
+                backgroundLayer.invalidate();
+                menuLayer.invalidate();
+                overlayLayer.invalidate();
                 menu.resetBorder();
                 revalidate();
                 repaint();
@@ -152,51 +319,64 @@ public class EMPanel extends JPanel {
                         openGaussExplanation();
                         gaussPage = 0;
                     }
-                    revalidate();
                     repaint();
                     return;
                 }
                 
                 //Decides if the mouse is on a rod
-                for (int i = 0; i < rods.size(); i++) {
-                    temp = rods.get(i);
-                    tempInd = i;
-                    if (Math.pow((temp.getxDim() - e.getX()), 2)
-                            + Math.pow((temp.getyDim() - e.getY()), 2) < 100) {
-                        if (i < 18) {
-                            temp = new EMRod(temp.getCharge(), e.getX(),
-                                    e.getY());
-                            rods.add(temp);
-                            tempInd = rods.size() - 1;
-                        }
+                temp = null;
+                for (EMRod rod : palette) {
+                    if (Math.pow((rod.getxDim() - e.getX()), 2)
+                            + Math.pow((rod.getyDim() - e.getY()), 2) < 100) {
+                        temp = new EMRod(rod.getCharge(), e.getX(),
+                                e.getY());
+                        rods.add(temp);
+                        charges.add(temp.getxDim(), temp.getyDim(), temp.getCharge());
+                        tempInd = rods.size() - 1;
+                        sceneChanged();
                         break;
                     }
-                    temp = null;
+                }
+                if (temp == null) {
+                    int index = charges.nearest(e.getX(), e.getY(), 10);
+                    if (index >= 0) {
+                        temp = rods.get(index);
+                        tempInd = index;
+                    }
+                }
+
+                //Removes the object under the mouse on a right click
+                if (temp == null && SwingUtilities.isRightMouseButton(e)) {
+                    EMObj hit = findObject(e.getX(), e.getY());
+                    if (hit != null) {
+                        removeObject(hit);
+                        return;
+                    }
                 }
 
                 //Uses mouse mode to determine what object to create
                 if (temp == null) {
                     switch (mouseFunc) {
                         case 0:
-                            objects.add(new EMVec(e.getX(), e.getY(), rods, parent));
+                            objects.add(new EMVec(e.getX(), e.getY(), charges, parent));
                             break;
                         case 1:
-                            objects.add(new FieldLine(e.getX(), e.getY()));
+                            objects.add(new FieldLine(e.getX(), e.getY(), lineCache));
                             break;
                         case 2:
-                            objects.add(new EquiLine(e.getX(), e.getY(), rods));
+                            objects.add(new EquiLine(e.getX(), e.getY(), charges, lineCache));
                             break;
                         case 3:
                             prevX = e.getX();
                             prevY = e.getY();
                             surface = new GaussSurface();
                             objects.add(surface);
-                            surface.add(new Dimension(prevX, prevY), rods);
+                            surface.add(prevX, prevY, charges);
 
                     }
+                    sceneChanged();
                 }
                 
-                revalidate();
                 repaint();
 
             }
@@ -213,17 +393,19 @@ public class EMPanel extends JPanel {
                 
                 if (trash) {
                     rods.remove(tempInd);
+                    charges.remove(tempInd);
                     trash = false;
                     noPic = false;
                 }
                 
                 if (mouseFunc == 3 && surface != null) {
-                    surface.wrapUp(rods);
+                    surface.wrapUp(charges);
                     surface = null;
                 }
                 
-                revalidate();
-                repaint();
+                refineTimer.stop();
+                previewing = false;
+                requestFrame(true, null);
             }
 
         });
@@ -241,11 +423,15 @@ public class EMPanel extends JPanel {
                 if (temp != null) {
                     
                     //Moves the EMRod which is being held
+                    Rectangle area = temp.getBounds();
+                    boolean trashWas = trash && !noPic;
                     if (grid) {
                         temp.setDim((e.getX() + GRID_SPACE / 2) / GRID_SPACE * GRID_SPACE + 1, (e.getY()) / GRID_SPACE * GRID_SPACE + 15);
                     } else {
                         temp.setDim(e.getX(), e.getY());
                     }
+                    charges.move(tempInd, temp.getxDim(), temp.getyDim());
+                    area.add(temp.getBounds());
                     if (e.getX() > (getWidth() - 72)
                             && e.getY() > (getHeight() - 196)
                             && e.getY() < getHeight() - BOTTOM_MENU_Y) {
@@ -259,18 +445,24 @@ public class EMPanel extends JPanel {
                         trash = false;
                     }
                     
-                    revalidate();
-                    repaint();
-                } else if (mouseFunc == 3) {
+                    //Only the rod moved on screen, unless the trash opened or closed
+                    previewing = true;
+                    refineTimer.restart();
+                    requestFrame(true, trashWas == (trash && !noPic) ? area : null);
+                } else if (mouseFunc == 3 && surface != null) {
                     
                     //Adds to the GaussSurface which is being generated
                     if (((e.getX() - prevX) * (e.getX() - prevX) + (e.getY() - prevY) * (e.getY() - prevY)) > 25) {
-                        surface.add(new Dimension(e.getX(), e.getY()), rods);
+                        Rectangle area = surface.getNewestBounds();
+                        surface.add(e.getX(), e.getY(), charges);
+                        Rectangle added = surface.getNewestBounds();
+                        if (area != null && added != null) {
+                            area.add(added);
+                        }
 
                         prevX = e.getX();
                         prevY = e.getY();
-                        revalidate();
-                        repaint();
+                        requestFrame(false, added != null ? area : null);
                     }
                 }
             }
@@ -284,46 +476,43 @@ public class EMPanel extends JPanel {
                 
                 //Decides which mouse cursor to show
                 if (e.getX() < 25 && e.getY() < 32 + TOP_MENU_Y && e.getY() > TOP_MENU_Y) {
-                    setCursor(new Cursor(Cursor.HAND_CURSOR));
+                    setCursor(RenderResources.HAND_CURSOR);
                 } else {
-                    for (int i = 0; i < rods.size(); i++) {
-                        temp = rods.get(i);
-                        if (Math.pow((temp.getxDim() - e.getX()), 2)
-                                + Math.pow((temp.getyDim() - e.getY()), 2) < 100) {
-                            setCursor(new Cursor(Cursor.HAND_CURSOR));
-                            if (coordinates) {
-                                parent.setToolTipText("(" + temp.getxDim() + ", " + (parent.getHeight() - temp.getyDim()) + ")");
-                            }
+                    temp = null;
+                    for (EMRod rod : palette) {
+                        if (Math.pow((rod.getxDim() - e.getX()), 2)
+                                + Math.pow((rod.getyDim() - e.getY()), 2) < 100) {
+                            temp = rod;
                             break;
                         }
-                        if (i == rods.size() - 1) {
-                            setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
-                            temp = null;
-                            parent.setToolTipText("");
+                    }
+                    if (temp == null) {
+                        int index = charges.nearest(e.getX(), e.getY(), 10);
+                        if (index >= 0) {
+                            temp = rods.get(index);
                         }
                     }
+                    if (temp != null) {
+                        setCursor(RenderResources.HAND_CURSOR);
+                        if (coordinates) {
+                            parent.setToolTipText("(" + Math.round(temp.getxDim()) + ", "
+                                    + Math.round(parent.getHeight() - temp.getyDim()) + ")");
+                        }
+                    } else {
+                        setCursor(RenderResources.DEFAULT_CURSOR);
+                        parent.setToolTipText("");
+                    }
                     
                     //Displays the coordinates of a point if coordinates is true
                     if (coordinates && temp == null) {
-                        EMVec tempObj;
-                        for (int i = 0; i < objects.size(); i++) {
-                            if (objects.get(i).getType().contentEquals("FieldVector")) {
-                                tempObj = (EMVec) objects.get(i);
-                                if (Math.pow((tempObj.getxDim() - e.getX()), 2)
-                                        + Math.pow((tempObj.getyDim() - e.getY()), 2) < 25) {
-                                    setCursor(new Cursor(Cursor.HAND_CURSOR));
-                                    int[] dimensions = tempObj.getDim();
-                                    parent.setToolTipText("B:(" + dimensions[0]
-                                            + ", " + dimensions[1] + ")\n"
-                                            + "T:(" + dimensions[2]
-                                            + ", " + dimensions[3] + ")");
-                                    break;
-                                }
-                                if (i == objects.size() - 1) {
-                                    setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
-                                    parent.setToolTipText("");
-                                }
-                            }
+                        EMObj hit = findObject(e.getX(), e.getY());
+                        if (hit instanceof EMVec) {
+                            setCursor(RenderResources.HAND_CURSOR);
+                            int[] dimensions = hit.getDim();
+                            parent.setToolTipText("B:(" + dimensions[0]
+                                    + ", " + dimensions[1] + ")\n"
+                                    + "T:(" + dimensions[2]
+                                    + ", " + dimensions[3] + ")");
                         }
                     }
                 }
@@ -334,50 +523,64 @@ public class EMPanel extends JPanel {
 
     @Override
     protected void paintComponent(Graphics g) {
-
-        super.paintComponent(g);
-
-        //Draws the grid
-        if (grid) {
-            for (int x = 1; x <= this.getWidth(); x += GRID_SPACE) {
-                for (int y = TOP_MENU_Y; y <= this.getHeight() - BOTTOM_MENU_Y; y += GRID_SPACE) {
-                    g.drawLine(x, y, x, y);
-                }
-            }
+        long bytes = FrameStats.allocatedBytes();
+        long start = System.nanoTime();
+        Graphics2D g2 = (Graphics2D) g;
+        int w = getWidth();
+        int h = getHeight();
+
+        //Redraws only the layers whose contents have changed
+        if (trashShown != (trash && !noPic)) {
+            trashShown = trash && !noPic;
+            backgroundLayer.invalidate();
         }
-        
-        //Draws the trash
-        if (trash && !noPic) {
-            g.drawImage(trashOpen, this.getWidth() - 72, this.getHeight() - 196, this);
-        } else {
-            g.drawImage(trashClosed, this.getWidth() - 72, this.getHeight() - 196, this);
+        if (overlayPublished != scheduler.getPublished()
+                || overlayObjects != objects.size() || overlayTemp != temp
+                || overlaySurface != surface) {
+            overlayPublished = scheduler.getPublished();
+            overlayObjects = objects.size();
+            overlayTemp = temp;
+            overlaySurface = surface;
+            overlayLayer.invalidate();
         }
-        
-        //Draws all objects on the Panel
-        for (EMObj object : objects) {
-            object.paintObj(g, rods, width, height, pointCharge);
+        backgroundLayer.paint(g2, 0, 0, w, h);
+        overlayLayer.paint(g2, 0, 0, w, h);
+        menuLayer.paint(g2, 0, h - BOTTOM_MENU_Y, w, BOTTOM_MENU_Y);
+        g.setColor(Color.black);
+        g.drawLine(0, TOP_MENU_Y, w, TOP_MENU_Y);
+
+        //Draws the surface being placed and the rod being held or pointed at
+        //    above everything else, so moving them only repaints their area
+        if (surface != null) {
+            surface.paintObj(g, scene);
         }
-        
-        //Generates the different menus
         if (temp != null) {
-            for (int i = 18; i < rods.size(); i++) {
-                if (!rods.get(i).equals(temp)) {
-                    rods.get(i).paintRods(g);
-                }
-            }
-            paintMenus(g);
             temp.paintRods(g);
-        } else {
-            for (int i = 18; i < rods.size(); i++) {
-                rods.get(i).paintRods(g);
-            }
-            paintMenus(g);
+        }
+
+        if (stale && scheduler.isIdle()) {
+            sceneChanged();
         }
         
         if(gaussExpl){
             g.drawImage(gaussImg.get(gaussPage), 10, 10, parent);
         }
 
+        stats.frame(start, bytes);
+        if (statsShown) {
+            stats.paint(g, 8, TOP_MENU_Y + 8);
+        }
+
+    }
+
+    //Draws the last results of an object into the overlays, measuring the
+    //    time and memory it takes
+    private void paintObject(EMObj object, Graphics2D g) {
+        long bytes = FrameStats.allocatedBytes();
+        long start = System.nanoTime();
+        object.paintObj(g, scene);
+        stats.painted(object, start, bytes);
+        stale |= object.isStale(scene);
     }
 
     //Sets the mode of the mouse
@@ -385,10 +588,15 @@ public class EMPanel extends JPanel {
         this.mouseFunc = mouseFunc;
     }
 
+    //Returns whether the grid is utilized
+    public boolean isGrid() {
+        return grid;
+    }
+
     //Sets whether the grid is utilized
     public void setGrid(boolean grid) {
         this.grid = grid;
-        revalidate();
+        backgroundLayer.invalidate();
         repaint();
     }
     
@@ -397,24 +605,178 @@ public class EMPanel extends JPanel {
         return this.grid;
     }
 
+    //Sets whether the traced lines are drawn antialiased
+    public void setAntialiased(boolean antialiased) {
+        this.antialiased = antialiased;
+        overlayLayer.invalidate();
+        repaint();
+    }
+
+    //Returns if the traced lines are drawn antialiased
+    public boolean isAntialiased() {
+        return antialiased;
+    }
+
     //Removes the last object placed, not including EMRods
     public void undo() {
         if (objects.size() > 0) {
-            objects.remove(objects.size() - 1);
-            revalidate();
+            removeObject(objects.get(objects.size() - 1));
+        }
+    }
+
+    //Removes a placed object from the scene
+    public void removeObject(EMObj object) {
+        if (objects.remove(object)) {
+            objectIndex.remove(object);
+            lineCache.remove(object);
+            lineCache.retain(objects);
+            overlayLayer.invalidate();
             repaint();
         }
     }
 
-    //Draws the upper and lower menus
+    //Returns the placed object drawn closest to a point, within a few pixels,
+    //    or null if there is none. The index is only refreshed once new
+    //    results have been published or objects placed.
+    public EMObj findObject(int xDim, int yDim) {
+        if (indexPublished != scheduler.getPublished() || indexObjects != objects.size()) {
+            indexPublished = scheduler.getPublished();
+            indexObjects = objects.size();
+            objectIndex.refresh(objects);
+        }
+        return objectIndex.find(xDim, yDim, 5);
+    }
+
+    //Saves the rods, objects and views of the scene, in the text form when the
+    //    file name ends in .scene and in the binary form otherwise
+    public void saveScene(Path path) throws IOException {
+        SceneFile file = new SceneFile();
+        file.width = width;
+        file.height = height;
+        file.pointCharge = pointCharge;
+        file.grid = grid;
+        file.latticeSpacing = lattice != null ? latticeSpacing : 0;
+        file.potentialMap = potentialMap != null;
+        file.contourLevels = contours != null ? contourLevels : 0;
+        file.streamlines = streamlines != null;
+        file.setCharges(charges);
+        for (EMObj object : objects) {
+            file.addObject(object);
+        }
+        if (path.getFileName().toString().endsWith(".scene")) {
+            file.writeText(path);
+        } else {
+            file.write(path);
+        }
+    }
+
+    //Replaces the rods, objects and views with those of a saved scene
+    public void loadScene(Path path) throws IOException {
+        SceneFile file = SceneFile.read(path);
+        file.applyCharges(charges);
+        rods.clear();
+        for (int i = 0; i < file.getRodCount(); i++) {
+            rods.add(new EMRod(file.getRodCharge(i), file.getRodX(i), file.getRodY(i)));
+        }
+        for (EMObj object : objects) {
+            objectIndex.remove(object);
+            lineCache.remove(object);
+        }
+        objects = file.createObjects(charges, lineCache, this);
+        pointCharge = file.pointCharge;
+        grid = file.grid;
+        backgroundLayer.invalidate();
+        if (file.latticeSpacing > 0) {
+            latticeSpacing = Math.max(VectorLattice.MIN_SPACING, file.latticeSpacing);
+        }
+        if (file.contourLevels > 0) {
+            contourLevels = file.contourLevels;
+        }
+        setVectorLattice(file.latticeSpacing > 0);
+        setPotentialMap(file.potentialMap);
+        setContours(file.contourLevels > 0);
+        setStreamlines(file.streamlines);
+        indexObjects = -1;
+        temp = null;
+        surface = null;
+        sceneChanged();
+        overlayLayer.invalidate();
+        repaint();
+    }
+
+    //Asks for the scene to be recomputed and an area repainted, or the whole
+    //    panel if the area is null. The first request is carried out at once,
+    //    and the ones arriving within the next frame are gathered into one.
+    private void requestFrame(boolean recompute, Rectangle area) {
+        scenePending |= recompute;
+        if (area == null) {
+            allDirty = true;
+        } else if (dirty == null) {
+            dirty = new Rectangle(area);
+        } else {
+            dirty.add(area);
+        }
+        if (!frameTimer.isRunning()) {
+            flushFrame();
+            frameTimer.start();
+        }
+    }
+
+    //Carries out the recompute and repaint gathered since the last frame
+    private void flushFrame() {
+        if (scenePending) {
+            scenePending = false;
+            sceneChanged();
+        }
+        if (allDirty) {
+            repaint();
+        } else if (dirty != null) {
+            repaint(dirty);
+        }
+        dirty = null;
+        allDirty = false;
+    }
+
+    //Recomputes every object in the background for the current charges
+    private void sceneChanged() {
+        scene = new SceneSnapshot(charges, width, height, TOP_MENU_Y, BOTTOM_MENU_Y, pointCharge,
+                previewing);
+        ArrayList<EMObj> work = new ArrayList<>();
+        if (potentialMap != null) {
+            work.add(potentialMap);
+        }
+        if (contours != null) {
+            work.add(contours);
+        }
+        if (streamlines != null) {
+            work.add(streamlines);
+        }
+        if (lattice != null) {
+            work.add(lattice);
+        }
+        work.addAll(objects);
+        lineCache.retain(objects);
+        scheduler.schedule(scene, work);
+    }
+
+    //Draws the grid points between the top and bottom menus of a panel of the
+    //    given size, in the current color
+    static void paintGrid(Graphics g, int width, int height) {
+        for (int x = 1; x <= width; x += GRID_SPACE) {
+            for (int y = TOP_MENU_Y; y <= height - BOTTOM_MENU_Y; y += GRID_SPACE) {
+                g.fillRect(x, y, 1, 1);
+            }
+        }
+    }
+
+    //Draws the lower menu and its source rods
     private void paintMenus(Graphics g) {
-        g.setColor(new Color(230, 230, 235));
+        g.setColor(MENU_BACKGROUND);
         g.fillRect(0, parent.getHeight() - BOTTOM_MENU_Y, parent.getWidth(), parent.getHeight());
         g.setColor(Color.black);
         g.drawLine(0, getHeight() - BOTTOM_MENU_Y, getWidth(), getHeight() - BOTTOM_MENU_Y);
-        g.drawLine(0, TOP_MENU_Y, getWidth(), TOP_MENU_Y);
-        for (int i = 0; i < 18; i++) {
-            rods.get(i).paintRods(g);
+        for (EMRod rod : palette) {
+            rod.paintRods(g);
         }
     }
 
@@ -426,10 +788,112 @@ public class EMPanel extends JPanel {
     //Sets whether the charge is a point charge
     public void setPointCharge(boolean pointCharge) {
         this.pointCharge = pointCharge;
-        revalidate();
+        sceneChanged();
         repaint();
     }
 
+    //Returns whether the lattice of field vectors is shown
+    public boolean isVectorLattice() {
+        return lattice != null;
+    }
+
+    //Sets whether the lattice of field vectors is shown
+    public void setVectorLattice(boolean shown) {
+        lattice = shown ? new VectorLattice(latticeSpacing, TOP_MENU_Y, BOTTOM_MENU_Y) : null;
+        sceneChanged();
+        overlayLayer.invalidate();
+        repaint();
+    }
+
+    //Returns whether the area is shaded by potential
+    public boolean isPotentialMap() {
+        return potentialMap != null;
+    }
+
+    //Sets whether the area is shaded by potential
+    public void setPotentialMap(boolean shown) {
+        if (shown) {
+            potentialMap = new PotentialMap(TOP_MENU_Y, BOTTOM_MENU_Y);
+            potentialMap.setProgress(new Runnable() {
+
+                @Override
+                public void run() {
+                    scheduler.publish();
+                }
+            });
+        } else {
+            potentialMap = null;
+        }
+        sceneChanged();
+        overlayLayer.invalidate();
+        repaint();
+    }
+
+    //Returns whether evenly spaced equipotentials are shown
+    public boolean isContours() {
+        return contours != null;
+    }
+
+    //Sets whether evenly spaced equipotentials are shown
+    public void setContours(boolean shown) {
+        contours = shown ? new ContourSet(contourLevels, TOP_MENU_Y, BOTTOM_MENU_Y) : null;
+        sceneChanged();
+        overlayLayer.invalidate();
+        repaint();
+    }
+
+    //Returns the number of evenly spaced equipotentials
+    public int getContourLevels() {
+        return contourLevels;
+    }
+
+    //Sets the number of evenly spaced equipotentials
+    public void setContourLevels(int contourLevels) {
+        this.contourLevels = Math.max(1, contourLevels);
+        if (contours != null) {
+            setContours(true);
+        }
+    }
+
+    //Returns whether the diagram of evenly spaced field lines is shown
+    public boolean isStreamlines() {
+        return streamlines != null;
+    }
+
+    //Sets whether the diagram of evenly spaced field lines is shown
+    public void setStreamlines(boolean shown) {
+        streamlines = shown ? new StreamlineSet(streamlineSeparation, true, TOP_MENU_Y, BOTTOM_MENU_Y) : null;
+        sceneChanged();
+        overlayLayer.invalidate();
+        repaint();
+    }
+
+    //Returns the distance kept between the evenly spaced field lines
+    public int getStreamlineSeparation() {
+        return streamlineSeparation;
+    }
+
+    //Sets the distance kept between the evenly spaced field lines
+    public void setStreamlineSeparation(int streamlineSeparation) {
+        this.streamlineSeparation = Math.max(StreamlineSet.MIN_SEPARATION, streamlineSeparation);
+        if (streamlines != null) {
+            setStreamlines(true);
+        }
+    }
+
+    //Returns the distance between vectors of the lattice
+    public int getLatticeSpacing() {
+        return latticeSpacing;
+    }
+
+    //Sets the distance between vectors of the lattice
+    public void setLatticeSpacing(int latticeSpacing) {
+        this.latticeSpacing = Math.max(VectorLattice.MIN_SPACING, latticeSpacing);
+        if (lattice != null) {
+            setVectorLattice(true);
+        }
+    }
+
     //Returns if coordinates are displayed
     public boolean isCoordinates() {
         return coordinates;
@@ -440,10 +904,20 @@ public class EMPanel extends JPanel {
         this.coordinates = coordinates;
     }
 
+    //Returns whether the frame statistics are shown
+    public boolean isStatsShown() {
+        return statsShown;
+    }
+
+    //Sets whether the frame statistics are shown over the scene
+    public void setStatsShown(boolean statsShown) {
+        this.statsShown = statsShown;
+        repaint();
+    }
+
     //Opens the explanation for the Gaussian Surface algorithm
     public void openGaussExplanation() {
         gaussExpl = !gaussExpl;
-        this.revalidate();
         this.repaint();
     }
 }
@@ -0,0 +1,230 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class hashes the charges of a ChargeStore into square cells so that the
+    charges near a point can be found without looking at every charge. Each
+    occupied cell keeps a chain of the indices of its charges, and the cells
+    are found through an open addressing table keyed by their column and row.
+*/
+
+package emfields.EMPhysics;
+
+import java.util.Arrays;
+
+class ChargeGrid {
+
+    //Width of a cell, at least the radius of the usual queries
+    static final double CELL = 20;
+
+    //Charges which can be checked directly in the time of one cell lookup
+    private static final int SCAN_RATIO = 4;
+
+    //Marks a slot of the table which has never held a cell
+    private static final int FREE = -2;
+
+    private final ChargeStore store;    //Store whose charges are hashed
+
+    //Table of cells; an empty cell keeps its slot until the table is rebuilt
+    private long[] keys = new long[64];
+    private int[] heads = new int[64];  //First charge of the cell, or -1 if empty
+    private int used = 0;               //Slots which hold a cell
+
+    private int[] next = new int[16];   //Next charge in the same cell, or -1
+
+    //Initializes an empty grid for a store
+    ChargeGrid(ChargeStore store) {
+        this.store = store;
+        Arrays.fill(heads, FREE);
+    }
+
+    //Initializes a grid for a copied store, sharing nothing with the original
+    ChargeGrid(ChargeStore store, ChargeGrid other) {
+        this.store = store;
+        keys = other.keys.clone();
+        heads = other.heads.clone();
+        used = other.used;
+        next = Arrays.copyOf(other.next, Math.max(store.x.length, 1));
+    }
+
+    //Adds the charge at the index
+    void add(int index) {
+        if (next.length < store.x.length) {
+            next = Arrays.copyOf(next, store.x.length);
+        }
+        insert(index);
+    }
+
+    //Moves the charge at the index, which is already at its new position
+    void move(int index, double xOld, double yOld) {
+        int slot = find(key(xOld, yOld));
+        if (slot >= 0) {
+            if (heads[slot] == index) {
+                heads[slot] = next[index];
+            } else {
+                for (int i = heads[slot]; i >= 0; i = next[i]) {
+                    if (next[i] == index) {
+                        next[i] = next[index];
+                        break;
+                    }
+                }
+            }
+        }
+        insert(index);
+    }
+
+    //Hashes every charge again, as after a removal shifts the indices
+    void rebuild() {
+        int cells = 0;
+        for (int i = 0; i < heads.length; i++) {
+            if (heads[i] >= 0) {
+                cells++;
+            }
+        }
+        int capacity = 64;
+        while (capacity < 4 * Math.max(cells, store.size)) {
+            capacity *= 2;
+        }
+        keys = new long[capacity];
+        heads = new int[capacity];
+        Arrays.fill(heads, FREE);
+        used = 0;
+        if (next.length < store.x.length) {
+            next = new int[store.x.length];
+        }
+        for (int i = 0; i < store.size; i++) {
+            insert(i);
+        }
+    }
+
+    //Checks if any charge lies closer than the radius to a point
+    boolean anyWithin(double xDim, double yDim, double radius) {
+        return nearest(xDim, yDim, radius) >= 0;
+    }
+
+    //Returns the index of the closest charge within the radius of a point,
+    //    or -1 if there is none
+    int nearest(double xDim, double yDim, double radius) {
+        double[] x = store.x;
+        double[] y = store.y;
+        double best = radius * radius;
+        int found = -1;
+        int colMin = cell(xDim - radius);
+        int colMax = cell(xDim + radius);
+        int rowMin = cell(yDim - radius);
+        int rowMax = cell(yDim + radius);
+
+        //Checks the charges directly when that takes fewer steps
+        if ((long) (colMax - colMin + 1) * (rowMax - rowMin + 1) > store.size / SCAN_RATIO) {
+            for (int i = 0; i < store.size; i++) {
+                double xDist = x[i] - xDim;
+                double yDist = y[i] - yDim;
+                double distSq = xDist * xDist + yDist * yDist;
+                if (distSq < best) {
+                    best = distSq;
+                    found = i;
+                }
+            }
+            return found;
+        }
+        for (int col = colMin; col <= colMax; col++) {
+            for (int row = rowMin; row <= rowMax; row++) {
+                int slot = find(key(col, row));
+                for (int i = slot < 0 ? -1 : heads[slot]; i >= 0; i = next[i]) {
+                    double xDist = x[i] - xDim;
+                    double yDist = y[i] - yDim;
+                    double distSq = xDist * xDist + yDist * yDist;
+                    if (distSq < best) {
+                        best = distSq;
+                        found = i;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    //Returns the distance from a point to the closest charge, searching the
+    //    rings of cells around the point until no closer charge can remain
+    double nearestDistance(double xDim, double yDim) {
+        double[] x = store.x;
+        double[] y = store.y;
+        int col = cell(xDim);
+        int row = cell(yDim);
+        double best = Double.POSITIVE_INFINITY;
+        for (int ring = 0; ; ring++) {
+
+            //Charges outside the rings searched are at least this far away
+            double reach = (ring - 1) * CELL;
+            if (ring > 0 && best <= reach * reach) {
+                return Math.sqrt(best);
+            }
+            if ((long) (2 * ring + 1) * (2 * ring + 1) > store.size / SCAN_RATIO) {
+                break;
+            }
+            for (int c = col - ring; c <= col + ring; c++) {
+                int step = c == col - ring || c == col + ring ? 1 : 2 * ring;
+                for (int r = row - ring; r <= row + ring; r += Math.max(step, 1)) {
+                    int slot = find(key(c, r));
+                    for (int i = slot < 0 ? -1 : heads[slot]; i >= 0; i = next[i]) {
+                        double xDist = x[i] - xDim;
+                        double yDist = y[i] - yDim;
+                        best = Math.min(best, xDist * xDist + yDist * yDist);
+                    }
+                }
+            }
+        }
+
+        //Falls back on every charge once the rings cover too many cells
+        best = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < store.size; i++) {
+            double xDist = x[i] - xDim;
+            double yDist = y[i] - yDim;
+            best = Math.min(best, xDist * xDist + yDist * yDist);
+        }
+        return Math.sqrt(best);
+    }
+
+    //Links a charge into the chain of its cell
+    private void insert(int index) {
+        long key = key(store.x[index], store.y[index]);
+        int slot = find(key);
+        if (slot < 0) {
+            if (2 * (used + 1) > keys.length) {
+                rebuild();
+                return;
+            }
+            slot = ~slot;
+            keys[slot] = key;
+            heads[slot] = -1;
+            used++;
+        }
+        next[index] = heads[slot];
+        heads[slot] = index;
+    }
+
+    //Returns the slot of a cell, or the complement of the free slot where it
+    //    would go if the table does not hold it
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+        while (heads[slot] != FREE) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return ~slot;
+    }
+
+    private static int cell(double dim) {
+        return (int) Math.floor(dim / CELL);
+    }
+
+    private static long key(double xDim, double yDim) {
+        return key(cell(xDim), cell(yDim));
+    }
+
+    private static long key(int col, int row) {
+        return (long) col << 32 | (row & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,22 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This interface receives the changes recorded by a ChargeStore when they are
+    replayed, so that objects which keep results for each charge only have to
+    update the charges which actually changed.
+*/
+
+package emfields.EMPhysics;
+
+public interface ChargeListener {
+
+    //A charge was added at the index
+    public void chargeAdded(int index, double xDim, double yDim, double charge);
+
+    //The charge at the index was moved from the old position to the new one
+    public void chargeMoved(int index, double xOld, double yOld, double xDim, double yDim,
+            double charge);
+
+    //The charge at the index was removed from the given position
+    public void chargeRemoved(int index, double xDim, double yDim, double charge);
+}
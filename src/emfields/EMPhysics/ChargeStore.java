@@ -0,0 +1,254 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class holds the positions and charges of every rod placed in the scene as
+    packed primitive arrays. The palette rods in the bottom menu are not part
+    of the scene and are never stored here. A ChargeGrid is kept up to date
+    with every change so the charges near a point are found quickly.
+*/
+
+package emfields.EMPhysics;
+
+import java.util.Arrays;
+
+public class ChargeStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    //Number of recent changes which can be replayed
+    private static final int JOURNAL_SIZE = 256;
+
+    //Kinds of change kept in the journal
+    private static final int ADDED = 0;
+    private static final int MOVED = 1;
+    private static final int REMOVED = 2;
+
+    //Packed charge data, only the first size entries are valid
+    double[] x = new double[INITIAL_CAPACITY];
+    double[] y = new double[INITIAL_CAPACITY];
+    double[] q = new double[INITIAL_CAPACITY];
+    int size = 0;
+
+    //Counts every change made to the charges
+    private int version = 0;
+
+    //Journal of the most recent changes, the change which produced a version
+    //    is kept at the slot (version % JOURNAL_SIZE)
+    private final int[] changeType = new int[JOURNAL_SIZE];
+    private final int[] changeIndex = new int[JOURNAL_SIZE];
+    private final double[] changeOldX = new double[JOURNAL_SIZE];
+    private final double[] changeOldY = new double[JOURNAL_SIZE];
+    private final double[] changeX = new double[JOURNAL_SIZE];
+    private final double[] changeY = new double[JOURNAL_SIZE];
+    private final double[] changeQ = new double[JOURNAL_SIZE];
+
+    //Tree over the charges, built on demand for the current version
+    private volatile ChargeTree tree;
+
+    //Cells of the charges, for finding the charges near a point
+    private final ChargeGrid grid;
+
+    //Initializes an empty store
+    public ChargeStore() {
+        grid = new ChargeGrid(this);
+    }
+
+    //Initializes a store holding the same charges and journal as another
+    private ChargeStore(ChargeStore other) {
+        x = Arrays.copyOf(other.x, Math.max(other.size, 1));
+        y = Arrays.copyOf(other.y, Math.max(other.size, 1));
+        q = Arrays.copyOf(other.q, Math.max(other.size, 1));
+        size = other.size;
+        version = other.version;
+        System.arraycopy(other.changeType, 0, changeType, 0, JOURNAL_SIZE);
+        System.arraycopy(other.changeIndex, 0, changeIndex, 0, JOURNAL_SIZE);
+        System.arraycopy(other.changeOldX, 0, changeOldX, 0, JOURNAL_SIZE);
+        System.arraycopy(other.changeOldY, 0, changeOldY, 0, JOURNAL_SIZE);
+        System.arraycopy(other.changeX, 0, changeX, 0, JOURNAL_SIZE);
+        System.arraycopy(other.changeY, 0, changeY, 0, JOURNAL_SIZE);
+        System.arraycopy(other.changeQ, 0, changeQ, 0, JOURNAL_SIZE);
+        tree = other.tree;
+        grid = new ChargeGrid(this, other.grid);
+    }
+
+    //Returns a copy of the store which can be read from another thread
+    public ChargeStore copy() {
+        return new ChargeStore(this);
+    }
+
+    //Adds a charge to the end of the store
+    public void add(double xDim, double yDim, double charge) {
+        if (size == x.length) {
+            grow();
+        }
+        x[size] = xDim;
+        y[size] = yDim;
+        q[size] = charge;
+        size++;
+        grid.add(size - 1);
+        record(ADDED, size - 1, xDim, yDim, xDim, yDim, charge);
+    }
+
+    //Moves the charge at the given index
+    public void move(int index, double xDim, double yDim) {
+        checkIndex(index);
+        record(MOVED, index, x[index], y[index], xDim, yDim, q[index]);
+        double xOld = x[index];
+        double yOld = y[index];
+        x[index] = xDim;
+        y[index] = yDim;
+        grid.move(index, xOld, yOld);
+    }
+
+    //Removes the charge at the given index, keeping the order of the others
+    public void remove(int index) {
+        checkIndex(index);
+        double xOld = x[index];
+        double yOld = y[index];
+        double charge = q[index];
+        int tail = size - index - 1;
+        if (tail > 0) {
+            System.arraycopy(x, index + 1, x, index, tail);
+            System.arraycopy(y, index + 1, y, index, tail);
+            System.arraycopy(q, index + 1, q, index, tail);
+        }
+        size--;
+        grid.rebuild();
+        record(REMOVED, index, xOld, yOld, xOld, yOld, charge);
+    }
+
+    //Replaces every charge with the first count entries of the arrays. The
+    //    journal is skipped past, so listeners have to start over.
+    public void setAll(double[] xs, double[] ys, double[] qs, int count) {
+        int capacity = Math.max(count, INITIAL_CAPACITY);
+        x = Arrays.copyOf(xs, capacity);
+        y = Arrays.copyOf(ys, capacity);
+        q = Arrays.copyOf(qs, capacity);
+        size = count;
+        version += JOURNAL_SIZE + 1;
+        grid.rebuild();
+    }
+
+    //Copies the positions and charges into the first size entries of the arrays
+    public void get(double[] xs, double[] ys, double[] qs) {
+        System.arraycopy(x, 0, xs, 0, size);
+        System.arraycopy(y, 0, ys, 0, size);
+        System.arraycopy(q, 0, qs, 0, size);
+    }
+
+    //Advances the version and keeps the change in the journal
+    private void record(int type, int index, double xOld, double yOld,
+            double xDim, double yDim, double charge) {
+        version++;
+        int slot = Math.floorMod(version, JOURNAL_SIZE);
+        changeType[slot] = type;
+        changeIndex[slot] = index;
+        changeOldX[slot] = xOld;
+        changeOldY[slot] = yOld;
+        changeX[slot] = xDim;
+        changeY[slot] = yDim;
+        changeQ[slot] = charge;
+    }
+
+    //Replays every change made after the given version, in order. Returns
+    //    false without replaying anything if some of them are no longer in
+    //    the journal, in which case the listener has to start over.
+    public boolean replay(int since, ChargeListener listener) {
+        int count = version - since;
+        if (count < 0 || count > JOURNAL_SIZE) {
+            return false;
+        }
+        for (int v = since + 1; v - version <= 0; v++) {
+            int slot = Math.floorMod(v, JOURNAL_SIZE);
+            switch (changeType[slot]) {
+                case ADDED:
+                    listener.chargeAdded(changeIndex[slot], changeX[slot], changeY[slot],
+                            changeQ[slot]);
+                    break;
+                case MOVED:
+                    listener.chargeMoved(changeIndex[slot], changeOldX[slot], changeOldY[slot],
+                            changeX[slot], changeY[slot], changeQ[slot]);
+                    break;
+                case REMOVED:
+                    listener.chargeRemoved(changeIndex[slot], changeX[slot], changeY[slot],
+                            changeQ[slot]);
+                    break;
+            }
+        }
+        return true;
+    }
+
+    //Checks if any charge lies closer than the radius to a point
+    public boolean anyWithin(double xDim, double yDim, double radius) {
+        return grid.anyWithin(xDim, yDim, radius);
+    }
+
+    //Returns the index of the closest charge within the radius of a point,
+    //    or -1 if there is none
+    public int nearest(double xDim, double yDim, double radius) {
+        return grid.nearest(xDim, yDim, radius);
+    }
+
+    //Returns the distance from a point to the closest charge
+    public double nearestDistance(double xDim, double yDim) {
+        return grid.nearestDistance(xDim, yDim);
+    }
+
+    //Returns a tree over the charges, building it again if they have changed
+    //    since it was last built
+    public ChargeTree getTree() {
+        ChargeTree current = tree;
+        if (current == null || current.getVersion() != version) {
+            synchronized (this) {
+                current = tree;
+                if (current == null || current.getVersion() != version) {
+                    current = new ChargeTree(this);
+                    tree = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    //Returns the number of charges in the scene
+    public int size() {
+        return size;
+    }
+
+    //Returns the version of the charges, which changes with every edit
+    public int getVersion() {
+        return version;
+    }
+
+    //Returns the x dimension of a charge
+    public double getX(int index) {
+        checkIndex(index);
+        return x[index];
+    }
+
+    //Returns the y dimension of a charge
+    public double getY(int index) {
+        checkIndex(index);
+        return y[index];
+    }
+
+    //Returns the charge value of a charge
+    public double getCharge(int index) {
+        checkIndex(index);
+        return q[index];
+    }
+
+    //Doubles the capacity of the arrays
+    private void grow() {
+        int capacity = x.length * 2;
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        q = Arrays.copyOf(q, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Charge " + index + " of " + size);
+        }
+    }
+}
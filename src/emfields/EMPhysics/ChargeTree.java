@@ -0,0 +1,484 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class groups the charges of a ChargeStore into a quadtree so the field and
+    potential of thousands of charges can be found without visiting each one.
+    A group of charges which is small compared to its distance from the point
+    is replaced by an expansion about the center of its square:
+
+    For line charges the potential is the real part of sum q log(z - z_i) in
+    complex form, so each square keeps the multipole moments sum q (z_i - c)^k
+    and the sum is a short series in 1 / (z - c).
+
+    For point charges the 1 / r potential is not a complex function in the
+    plane, so 1 / |z - z_i| is expanded in Legendre polynomials of the angle
+    between the point and the charge. Each P_l is a sum of cos(m angle), so
+    each square keeps the moments sum q |s|^(l - m) conj(s)^m.
+
+    The opening angle sets the accuracy: a square is expanded once its width
+    is less than the angle times its distance. Against the direct sums over
+    3000 to 20000 random charges, the default angle keeps the field within a
+    relative error of 2e-5 for line charges and 5e-5 for point charges, with
+    the point charge series taken to degree 10.
+
+    Sums are returned in the same form as the loops in FieldKernel, before the
+    constants are applied.
+*/
+
+package emfields.EMPhysics;
+
+import java.util.Arrays;
+
+public class ChargeTree {
+
+    public static final double DEFAULT_THETA = .5;  //Default opening angle
+    public static final int ORDER = 12;             //Terms in a line charge expansion
+    public static final int POINT_ORDER = 10;       //Highest Legendre term for point charges
+
+    //Degree, angular order and coefficient of every point charge term, from
+    //    P_l(cos a) = sum over k of c_k c_(l - k) cos((l - 2k) a), where
+    //    c_k = (2k)! / (2^k k!)^2. Terms are ordered by angular order m, then
+    //    by degree l, so the powers of d only ever advance.
+    private static final int[] TERM_L;
+    private static final int[] TERM_M;
+    private static final double[] TERM_C;
+    private static final int TERMS;
+
+    static {
+        double[] c = new double[POINT_ORDER + 1];
+        c[0] = 1;
+        for (int k = 1; k <= POINT_ORDER; k++) {
+            c[k] = c[k - 1] * (2 * k - 1) / (2 * k);
+        }
+        int terms = 0;
+        for (int l = 0; l <= POINT_ORDER; l++) {
+            terms += l / 2 + 1;
+        }
+        TERMS = terms;
+        TERM_L = new int[terms];
+        TERM_M = new int[terms];
+        TERM_C = new double[terms];
+        int t = 0;
+        for (int m = 0; m <= POINT_ORDER; m++) {
+            for (int l = m; l <= POINT_ORDER; l += 2) {
+                int k = (l - m) / 2;
+                TERM_L[t] = l;
+                TERM_M[t] = m;
+                TERM_C[t] = (m == 0 ? 1 : 2) * c[k] * c[l - k];
+                t++;
+            }
+        }
+    }
+
+    private static final int LEAF_SIZE = 16;    //Most charges in a square which is not split
+    private static final int MAX_DEPTH = 24;    //Deepest split, for charges stacked on each other
+
+    private final int version;  //Version of the store the tree was built from
+
+    //Charges, reordered so every square holds a contiguous range
+    private final double[] px;
+    private final double[] py;
+    private final double[] pq;
+
+    //Squares of the tree; the four children of a square are stored together
+    private int nodes = 0;
+    private double[] centerX = new double[64];
+    private double[] centerY = new double[64];
+    private double[] half = new double[64];     //Half the width of the square
+    private int[] first = new int[64];          //First charge in the square
+    private int[] count = new int[64];          //Number of charges in the square
+    private int[] child = new int[64];          //First child, or -1 for a leaf
+
+    //Moments of every square about its center
+    private double[] total = new double[64];        //Total charge
+    private double[] momentRe = new double[64 * ORDER]; //Line charge moments, real part
+    private double[] momentIm = new double[64 * ORDER]; //Line charge moments, imaginary part
+    private double[] pointRe = new double[64 * TERMS]; //Point charge moments, real part
+    private double[] pointIm = new double[64 * TERMS]; //Point charge moments, imaginary part
+
+    //Builds the tree over the charges of a store
+    public ChargeTree(ChargeStore charges) {
+        version = charges.getVersion();
+        int n = charges.size;
+        px = Arrays.copyOf(charges.x, n);
+        py = Arrays.copyOf(charges.y, n);
+        pq = Arrays.copyOf(charges.q, n);
+
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, px[i]);
+            minY = Math.min(minY, py[i]);
+            maxX = Math.max(maxX, px[i]);
+            maxY = Math.max(maxY, py[i]);
+        }
+        if (n == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        double size = Math.max(Math.max(maxX - minX, maxY - minY) / 2, 1e-6);
+        int root = newNode((minX + maxX) / 2, (minY + maxY) / 2, size, 0, n);
+        split(root, 0);
+        for (int node = 0; node < nodes; node++) {
+            findMoments(node);
+        }
+    }
+
+    //Returns the version of the store the tree was built from
+    public int getVersion() {
+        return version;
+    }
+
+    //Returns the number of squares in the tree
+    public int getNodes() {
+        return nodes;
+    }
+
+    private int newNode(double x, double y, double size, int start, int length) {
+        if (nodes == half.length) {
+            int capacity = nodes * 2;
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            half = Arrays.copyOf(half, capacity);
+            first = Arrays.copyOf(first, capacity);
+            count = Arrays.copyOf(count, capacity);
+            child = Arrays.copyOf(child, capacity);
+            total = Arrays.copyOf(total, capacity);
+            momentRe = Arrays.copyOf(momentRe, capacity * ORDER);
+            momentIm = Arrays.copyOf(momentIm, capacity * ORDER);
+            pointRe = Arrays.copyOf(pointRe, capacity * TERMS);
+            pointIm = Arrays.copyOf(pointIm, capacity * TERMS);
+        }
+        centerX[nodes] = x;
+        centerY[nodes] = y;
+        half[nodes] = size;
+        first[nodes] = start;
+        count[nodes] = length;
+        child[nodes] = -1;
+        return nodes++;
+    }
+
+    //Splits a square into quarters until every square holds few charges
+    private void split(int node, int depth) {
+        if (count[node] <= LEAF_SIZE || depth >= MAX_DEPTH) {
+            return;
+        }
+        double x = centerX[node];
+        double y = centerY[node];
+        int start = first[node];
+        int end = start + count[node];
+
+        //Orders the charges top then bottom, and within each left then right
+        int middle = partition(start, end, y, false);
+        int topMiddle = partition(start, middle, x, true);
+        int bottomMiddle = partition(middle, end, x, true);
+
+        double quarter = half[node] / 2;
+        int firstChild = newNode(x - quarter, y - quarter, quarter, start, topMiddle - start);
+        newNode(x + quarter, y - quarter, quarter, topMiddle, middle - topMiddle);
+        newNode(x - quarter, y + quarter, quarter, middle, bottomMiddle - middle);
+        newNode(x + quarter, y + quarter, quarter, bottomMiddle, end - bottomMiddle);
+        child[node] = firstChild;
+        for (int k = 0; k < 4; k++) {
+            split(firstChild + k, depth + 1);
+        }
+    }
+
+    //Moves the charges below the split to the front of the range, returning
+    //    the index of the first charge at or above it
+    private int partition(int start, int end, double split, boolean alongX) {
+        int i = start;
+        int j = end - 1;
+        while (i <= j) {
+            if ((alongX ? px[i] : py[i]) < split) {
+                i++;
+            } else {
+                swap(i, j);
+                j--;
+            }
+        }
+        return i;
+    }
+
+    private void swap(int i, int j) {
+        double t = px[i];
+        px[i] = px[j];
+        px[j] = t;
+        t = py[i];
+        py[i] = py[j];
+        py[j] = t;
+        t = pq[i];
+        pq[i] = pq[j];
+        pq[j] = t;
+    }
+
+    //Sums the moments of the charges in a square about its center
+    private void findMoments(int node) {
+        double cx = centerX[node];
+        double cy = centerY[node];
+        double[] conjRe = new double[POINT_ORDER + 1];
+        double[] conjIm = new double[POINT_ORDER + 1];
+        double[] radial = new double[POINT_ORDER / 2 + 1];
+        double sum = 0;
+        int base = node * ORDER;
+        int pointBase = node * TERMS;
+        for (int i = first[node]; i < first[node] + count[node]; i++) {
+            double sx = px[i] - cx;
+            double sy = py[i] - cy;
+            double q = pq[i];
+            sum += q;
+
+            //Adds q s^k for every term of the complex expansion
+            double re = q;
+            double im = 0;
+            for (int k = 0; k < ORDER; k++) {
+                double nextRe = re * sx - im * sy;
+                im = re * sy + im * sx;
+                re = nextRe;
+                momentRe[base + k] += re;
+                momentIm[base + k] += im;
+            }
+
+            //Adds q |s|^(l - m) conj(s)^m for every Legendre term
+            conjRe[0] = q;
+            conjIm[0] = 0;
+            for (int m = 1; m <= POINT_ORDER; m++) {
+                conjRe[m] = conjRe[m - 1] * sx + conjIm[m - 1] * sy;
+                conjIm[m] = conjIm[m - 1] * sx - conjRe[m - 1] * sy;
+            }
+            radial[0] = 1;
+            for (int j = 1; j < radial.length; j++) {
+                radial[j] = radial[j - 1] * (sx * sx + sy * sy);
+            }
+            for (int t = 0; t < TERMS; t++) {
+                double r = radial[(TERM_L[t] - TERM_M[t]) / 2];
+                pointRe[pointBase + t] += r * conjRe[TERM_M[t]];
+                pointIm[pointBase + t] += r * conjIm[TERM_M[t]];
+            }
+        }
+        total[node] = sum;
+    }
+
+    //Adds the field and potential sums at a point to result, in the form
+    //    {sum q xDif / r^n, sum q yDif / r^n, potential sum} used by FieldKernel
+    public void field(double xDim, double yDim, boolean pointCharge, double theta,
+            double[] result) {
+        result[0] = 0;
+        result[1] = 0;
+        result[2] = 0;
+        if (nodes > 0) {
+            field(0, xDim, yDim, pointCharge, theta * theta, result);
+        }
+    }
+
+    private void field(int node, double xDim, double yDim, boolean pointCharge,
+            double thetaSq, double[] result) {
+        double dx = xDim - centerX[node];
+        double dy = yDim - centerY[node];
+        double distSq = dx * dx + dy * dy;
+        double width = 2 * half[node];
+        if (width * width < thetaSq * distSq) {
+            if (pointCharge) {
+                expandPoint(node, dx, dy, distSq, result);
+            } else {
+                expandLine(node, dx, dy, distSq, result);
+            }
+        } else if (child[node] < 0) {
+            direct(node, xDim, yDim, pointCharge, result);
+        } else {
+            for (int k = 0; k < 4; k++) {
+                if (count[child[node] + k] > 0) {
+                    field(child[node] + k, xDim, yDim, pointCharge, thetaSq, result);
+                }
+            }
+        }
+    }
+
+    //Returns only the potential sum at a point
+    public double potential(double xDim, double yDim, boolean pointCharge, double theta) {
+        return nodes > 0 ? potential(0, xDim, yDim, pointCharge, theta * theta) : 0;
+    }
+
+    private double potential(int node, double xDim, double yDim, boolean pointCharge,
+            double thetaSq) {
+        double dx = xDim - centerX[node];
+        double dy = yDim - centerY[node];
+        double distSq = dx * dx + dy * dy;
+        double width = 2 * half[node];
+        if (width * width < thetaSq * distSq) {
+            return pointCharge ? pointPotential(node, dx, dy, distSq)
+                    : linePotential(node, dx, dy, distSq);
+        } else if (child[node] < 0) {
+            double sum = 0;
+            for (int i = first[node]; i < first[node] + count[node]; i++) {
+                double xDif = px[i] - xDim;
+                double yDif = py[i] - yDim;
+                double r2 = xDif * xDif + yDif * yDif;
+                sum += pointCharge ? pq[i] / Math.sqrt(r2) : pq[i] * Math.log(r2);
+            }
+            return sum;
+        }
+        double sum = 0;
+        for (int k = 0; k < 4; k++) {
+            if (count[child[node] + k] > 0) {
+                sum += potential(child[node] + k, xDim, yDim, pointCharge, thetaSq);
+            }
+        }
+        return sum;
+    }
+
+    //Adds the sums of every charge in a leaf directly
+    private void direct(int node, double xDim, double yDim, boolean pointCharge, double[] result) {
+        double sumX = 0;
+        double sumY = 0;
+        double sumPot = 0;
+        for (int i = first[node]; i < first[node] + count[node]; i++) {
+            double xDif = px[i] - xDim;
+            double yDif = py[i] - yDim;
+            double distSq = xDif * xDif + yDif * yDif;
+            if (pointCharge) {
+                double inv = 1 / Math.sqrt(distSq);
+                double mag = pq[i] * inv * inv * inv;
+                sumX += mag * xDif;
+                sumY += mag * yDif;
+                sumPot += pq[i] * inv;
+            } else {
+                double mag = pq[i] / distSq;
+                sumX += mag * xDif;
+                sumY += mag * yDif;
+                sumPot += pq[i] * Math.log(distSq);
+            }
+        }
+        result[0] += sumX;
+        result[1] += sumY;
+        result[2] += sumPot;
+    }
+
+    //Adds the line charge expansion of a square. With d the point less the
+    //    center and a_k the moments, f = Q log d - sum a_k / (k d^k) and
+    //    f' = Q / d + sum a_k / d^(k + 1); the sums are 2 Re f, -Re f' and Im f'.
+    private void expandLine(int node, double dx, double dy, double distSq, double[] result) {
+        double uRe = dx / distSq;
+        double uIm = -dy / distSq;
+        double q = total[node];
+        double fRe = .5 * q * Math.log(distSq);
+        double dRe = q * uRe;
+        double dIm = q * uIm;
+        double powRe = uRe;
+        double powIm = uIm;
+        int base = node * ORDER;
+        for (int k = 0; k < ORDER; k++) {
+
+            //(a_k) u^(k + 1) in the derivative, and a_k u^(k + 1) / (k + 1) in f
+            double aRe = momentRe[base + k];
+            double aIm = momentIm[base + k];
+            double termRe = aRe * powRe - aIm * powIm;
+            double termIm = aRe * powIm + aIm * powRe;
+            fRe -= termRe / (k + 1);
+            double nextRe = powRe * uRe - powIm * uIm;
+            powIm = powRe * uIm + powIm * uRe;
+            powRe = nextRe;
+            dRe += aRe * powRe - aIm * powIm;
+            dIm += aRe * powIm + aIm * powRe;
+        }
+        result[0] -= dRe;
+        result[1] += dIm;
+        result[2] += 2 * fRe;
+    }
+
+    //Returns the line charge potential sum of a square from its expansion
+    private double linePotential(int node, double dx, double dy, double distSq) {
+        double uRe = dx / distSq;
+        double uIm = -dy / distSq;
+        double fRe = .5 * total[node] * Math.log(distSq);
+        double powRe = uRe;
+        double powIm = uIm;
+        int base = node * ORDER;
+        for (int k = 0; k < ORDER; k++) {
+            fRe -= (momentRe[base + k] * powRe - momentIm[base + k] * powIm) / (k + 1);
+            double nextRe = powRe * uRe - powIm * uIm;
+            powIm = powRe * uIm + powIm * uRe;
+            powRe = nextRe;
+        }
+        return 2 * fRe;
+    }
+
+    //Adds the point charge expansion of a square. With d the point less the
+    //    center and M the moments, each term is c |d|^-(l + m + 1) Re(M d^m),
+    //    and the field sums are the gradient of the potential sum.
+    private void expandPoint(int node, double dx, double dy, double distSq, double[] result) {
+        double inv = 1 / Math.sqrt(distSq);
+        double inv2 = inv * inv;
+        int base = node * TERMS;
+        double phi = 0;
+        double gradX = 0;
+        double gradY = 0;
+
+        //Keeps d^m, d^(m - 1) and |d|^-(2m + 1) for the current order
+        double powRe = 1;
+        double powIm = 0;
+        double lowRe = 0;
+        double lowIm = 0;
+        double radial = inv;
+        int m = 0;
+        for (int t = 0; t < TERMS; t++) {
+            if (TERM_M[t] > m) {
+                lowRe = powRe;
+                lowIm = powIm;
+                powRe = lowRe * dx - lowIm * dy;
+                powIm = lowRe * dy + lowIm * dx;
+                radial *= inv2;
+                m++;
+            }
+            int a = TERM_L[t] + m + 1;
+            double scale = TERM_C[t] * radial * pow(inv2, (TERM_L[t] - m) / 2);
+            double mRe = pointRe[base + t];
+            double mIm = pointIm[base + t];
+            double value = scale * (mRe * powRe - mIm * powIm);
+            phi += value;
+            gradX -= a * inv2 * dx * value;
+            gradY -= a * inv2 * dy * value;
+            if (m > 0) {
+                gradX += scale * m * (mRe * lowRe - mIm * lowIm);
+                gradY -= scale * m * (mRe * lowIm + mIm * lowRe);
+            }
+        }
+        result[0] += gradX;
+        result[1] += gradY;
+        result[2] += phi;
+    }
+
+    //Returns the point charge potential sum of a square from its expansion
+    private double pointPotential(int node, double dx, double dy, double distSq) {
+        double inv = 1 / Math.sqrt(distSq);
+        double inv2 = inv * inv;
+        int base = node * TERMS;
+        double phi = 0;
+        double powRe = 1;
+        double powIm = 0;
+        double radial = inv;
+        int m = 0;
+        for (int t = 0; t < TERMS; t++) {
+            if (TERM_M[t] > m) {
+                double nextRe = powRe * dx - powIm * dy;
+                powIm = powRe * dy + powIm * dx;
+                powRe = nextRe;
+                radial *= inv2;
+                m++;
+            }
+            phi += TERM_C[t] * radial * pow(inv2, (TERM_L[t] - m) / 2)
+                    * (pointRe[base + t] * powRe - pointIm[base + t] * powIm);
+        }
+        return phi;
+    }
+
+    //Returns a number raised to a small whole power
+    private static double pow(double value, int power) {
+        double result = 1;
+        for (int k = 0; k < power; k++) {
+            result *= value;
+        }
+        return result;
+    }
+}
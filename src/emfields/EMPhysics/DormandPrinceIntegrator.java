@@ -0,0 +1,196 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class implements the FieldIntegrator with the Dormand-Prince 5(4)
+    Runge-Kutta method. The difference between the fifth and fourth order
+    results estimates the error of a step, which sets the length of the next
+    one: steps grow long where the field bends slowly and shrink near the
+    charges. A step is also never longer than half the distance to the
+    nearest charge, so a line cannot jump over the rod it should end on.
+*/
+
+package emfields.EMPhysics;
+
+public class DormandPrinceIntegrator implements FieldIntegrator {
+
+    //Default error allowed in a single step, in pixels
+    public static final double DEFAULT_TOLERANCE = .01;
+
+    //Dormand-Prince coefficients
+    private static final double A21 = 1.0 / 5;
+    private static final double A31 = 3.0 / 40, A32 = 9.0 / 40;
+    private static final double A41 = 44.0 / 45, A42 = -56.0 / 15, A43 = 32.0 / 9;
+    private static final double A51 = 19372.0 / 6561, A52 = -25360.0 / 2187,
+            A53 = 64448.0 / 6561, A54 = -212.0 / 729;
+    private static final double A61 = 9017.0 / 3168, A62 = -355.0 / 33,
+            A63 = 46732.0 / 5247, A64 = 49.0 / 176, A65 = -5103.0 / 18656;
+    private static final double A71 = 35.0 / 384, A73 = 500.0 / 1113,
+            A74 = 125.0 / 192, A75 = -2187.0 / 6784, A76 = 11.0 / 84;
+    private static final double E1 = 71.0 / 57600, E3 = -71.0 / 16695,
+            E4 = 71.0 / 1920, E5 = -17253.0 / 339200, E6 = 22.0 / 525,
+            E7 = -1.0 / 40;
+
+    private double tolerance;       //Error allowed in a single step
+    private final double minStep;   //Shortest step which may be taken
+    private final double maxStep;   //Longest step which may be taken
+    private double h;               //Length of the next step
+
+    //Current point, the field direction there and the field magnitude
+    private double xDim;
+    private double yDim;
+    private double xDir;
+    private double yDir;
+    private double mag;
+
+    //Field direction and magnitude of the last stage evaluated
+    private double xStage;
+    private double yStage;
+    private double magStage;
+
+    //Initializes the integrator with the default tolerance
+    public DormandPrinceIntegrator() {
+        this(DEFAULT_TOLERANCE);
+    }
+
+    //Initializes the integrator with the error allowed in a single step
+    public DormandPrinceIntegrator(double tolerance) {
+        this(tolerance, .05, 40);
+    }
+
+    //Initializes the integrator with the error allowed and the step limits
+    public DormandPrinceIntegrator(double tolerance, double minStep, double maxStep) {
+        if (tolerance <= 0 || minStep <= 0 || maxStep < minStep) {
+            throw new IllegalArgumentException("Invalid integrator limits");
+        }
+        this.tolerance = tolerance;
+        this.minStep = minStep;
+        this.maxStep = maxStep;
+    }
+
+    @Override
+    public boolean start(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            double xDim, double yDim) {
+        this.xDim = xDim;
+        this.yDim = yDim;
+        h = 1;
+        if (!stage(kernel, charges, pointCharge, xDim, yDim)) {
+            return false;
+        }
+        xDir = xStage;
+        yDir = yStage;
+        mag = magStage;
+        return true;
+    }
+
+    @Override
+    public boolean step(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            int sign) {
+        double limit = Math.min(maxStep, .5 * charges.nearestDistance(xDim, yDim));
+        h = Math.max(minStep, Math.min(h, limit));
+
+        while (true) {
+            double s = sign * h;
+            double k1x = xDir, k1y = yDir;
+
+            boolean ok = stage(kernel, charges, pointCharge,
+                    xDim + s * A21 * k1x,
+                    yDim + s * A21 * k1y);
+            double k2x = xStage, k2y = yStage;
+
+            ok = ok && stage(kernel, charges, pointCharge,
+                    xDim + s * (A31 * k1x + A32 * k2x),
+                    yDim + s * (A31 * k1y + A32 * k2y));
+            double k3x = xStage, k3y = yStage;
+
+            ok = ok && stage(kernel, charges, pointCharge,
+                    xDim + s * (A41 * k1x + A42 * k2x + A43 * k3x),
+                    yDim + s * (A41 * k1y + A42 * k2y + A43 * k3y));
+            double k4x = xStage, k4y = yStage;
+
+            ok = ok && stage(kernel, charges, pointCharge,
+                    xDim + s * (A51 * k1x + A52 * k2x + A53 * k3x + A54 * k4x),
+                    yDim + s * (A51 * k1y + A52 * k2y + A53 * k3y + A54 * k4y));
+            double k5x = xStage, k5y = yStage;
+
+            ok = ok && stage(kernel, charges, pointCharge,
+                    xDim + s * (A61 * k1x + A62 * k2x + A63 * k3x + A64 * k4x + A65 * k5x),
+                    yDim + s * (A61 * k1y + A62 * k2y + A63 * k3y + A64 * k4y + A65 * k5y));
+            double k6x = xStage, k6y = yStage;
+
+            double xNew = xDim + s * (A71 * k1x + A73 * k3x + A74 * k4x + A75 * k5x + A76 * k6x);
+            double yNew = yDim + s * (A71 * k1y + A73 * k3y + A74 * k4y + A75 * k5y + A76 * k6y);
+            ok = ok && stage(kernel, charges, pointCharge, xNew, yNew);
+            double k7x = xStage, k7y = yStage;
+
+            double err = Double.NaN;
+            if (ok) {
+                double errX = E1 * k1x + E3 * k3x + E4 * k4x + E5 * k5x + E6 * k6x + E7 * k7x;
+                double errY = E1 * k1y + E3 * k3y + E4 * k4y + E5 * k5y + E6 * k6y + E7 * k7y;
+                err = h * Math.sqrt(errX * errX + errY * errY);
+            }
+
+            if (ok && (err <= tolerance || h <= minStep)) {
+                xDim = xNew;
+                yDim = yNew;
+                xDir = k7x;
+                yDir = k7y;
+                mag = magStage;
+                double factor = (err == 0) ? 5 : .9 * Math.pow(tolerance / err, .2);
+                h *= Math.max(.2, Math.min(5, factor));
+                return true;
+            }
+            if (h <= minStep) {
+                return false;
+            }
+            h = Math.max(minStep, h * (ok ? Math.max(.2, .9 * Math.pow(tolerance / err, .2)) : .2));
+        }
+    }
+
+    //Evaluates the unit field direction at a stage point
+    private boolean stage(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            double xDim, double yDim) {
+        kernel.evaluateField(charges, xDim, yDim, pointCharge);
+        magStage = kernel.getMag();
+        xStage = kernel.getEx() / magStage;
+        yStage = kernel.getEy() / magStage;
+        return magStage > 0 && !Double.isInfinite(magStage);
+    }
+
+    //Returns the error allowed in a single step
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    //Sets the error allowed in a single step
+    public void setTolerance(double tolerance) {
+        if (tolerance <= 0) {
+            throw new IllegalArgumentException("Tolerance must be positive");
+        }
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public double getX() {
+        return xDim;
+    }
+
+    @Override
+    public double getY() {
+        return yDim;
+    }
+
+    @Override
+    public double getXDir() {
+        return xDir;
+    }
+
+    @Override
+    public double getYDir() {
+        return yDir;
+    }
+
+    @Override
+    public double getMag() {
+        return mag;
+    }
+}
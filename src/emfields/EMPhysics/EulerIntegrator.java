@@ -0,0 +1,75 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class implements the FieldIntegrator with fixed-length Euler steps. This
+    is how Field Lines were originally traced, and it is kept as a reference.
+*/
+
+package emfields.EMPhysics;
+
+public class EulerIntegrator implements FieldIntegrator {
+
+    private final double precision; //Length of every step
+
+    //Current point and the field there
+    private double xDim;
+    private double yDim;
+    private double xDir;
+    private double yDir;
+    private double mag;
+
+    //Initializes the integrator with the length of a step
+    public EulerIntegrator(double precision) {
+        this.precision = precision;
+    }
+
+    @Override
+    public boolean start(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            double xDim, double yDim) {
+        this.xDim = xDim;
+        this.yDim = yDim;
+        return evaluate(kernel, charges, pointCharge);
+    }
+
+    @Override
+    public boolean step(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            int sign) {
+        xDim += sign * xDir * precision;
+        yDim += sign * yDir * precision;
+        return evaluate(kernel, charges, pointCharge);
+    }
+
+    //Evaluates the direction of the field at the current point
+    private boolean evaluate(FieldKernel kernel, ChargeStore charges, boolean pointCharge) {
+        kernel.evaluateField(charges, xDim, yDim, pointCharge);
+        mag = kernel.getMag();
+        xDir = kernel.getEx() / mag;
+        yDir = kernel.getEy() / mag;
+        return mag > 0 && !Double.isInfinite(mag);
+    }
+
+    @Override
+    public double getX() {
+        return xDim;
+    }
+
+    @Override
+    public double getY() {
+        return yDim;
+    }
+
+    @Override
+    public double getXDir() {
+        return xDir;
+    }
+
+    @Override
+    public double getYDir() {
+        return yDir;
+    }
+
+    @Override
+    public double getMag() {
+        return mag;
+    }
+}
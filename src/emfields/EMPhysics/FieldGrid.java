@@ -0,0 +1,110 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class holds the electric field on a regular lattice of points. The whole
+    lattice is evaluated in one pass over the charges, each charge adding its
+    field to every point of a flat array, instead of asking for the field one
+    point at a time.
+*/
+
+package emfields.EMPhysics;
+
+import java.util.Arrays;
+
+public class FieldGrid {
+
+    //Layout of the lattice
+    private final double x0;        //Position of the first point
+    private final double y0;        //Position of the first point
+    private final double spacing;   //Distance between neighbouring points
+    private final int cols;         //Number of points across
+    private final int rows;         //Number of points down
+
+    //Field at every point, stored row by row
+    private final float[] ex;
+    private final float[] ey;
+
+    //Initializes a lattice of cols by rows points starting at (x0, y0)
+    public FieldGrid(double x0, double y0, double spacing, int cols, int rows) {
+        if (cols < 0 || rows < 0 || spacing <= 0) {
+            throw new IllegalArgumentException("Bad lattice: " + cols + "x" + rows
+                    + " spaced " + spacing);
+        }
+        this.x0 = x0;
+        this.y0 = y0;
+        this.spacing = spacing;
+        this.cols = cols;
+        this.rows = rows;
+        ex = new float[cols * rows];
+        ey = new float[cols * rows];
+    }
+
+    //Calculates the field at every point, returning false if the scene was cancelled
+    public boolean evaluate(SceneSnapshot scene) {
+        ChargeStore charges = scene.getCharges();
+        boolean pointCharge = scene.isPointCharge();
+        final double[] cx = charges.x;
+        final double[] cy = charges.y;
+        final double[] cq = charges.q;
+        final int n = charges.size;
+        final double factor = pointCharge ? -FieldKernel.K * FieldKernel.POINT_SCALE
+                : -FieldKernel.K;
+
+        Arrays.fill(ex, 0);
+        Arrays.fill(ey, 0);
+        for (int i = 0; i < n; i++) {
+            if (scene.isCancelled()) {
+                return false;
+            }
+            final double q = cq[i] * factor;
+            int k = 0;
+            for (int r = 0; r < rows; r++) {
+                double yDif = cy[i] - (y0 + r * spacing);
+                double yDifSq = yDif * yDif;
+                for (int c = 0; c < cols; c++, k++) {
+                    double xDif = cx[i] - (x0 + c * spacing);
+                    double distSq = xDif * xDif + yDifSq;
+                    double mag = pointCharge ? q / (distSq * Math.sqrt(distSq)) : q / distSq;
+                    ex[k] += (float) (mag * xDif);
+                    ey[k] += (float) (mag * yDif);
+                }
+            }
+        }
+        return true;
+    }
+
+    //Returns the x position of a column
+    public double getX(int col) {
+        return x0 + col * spacing;
+    }
+
+    //Returns the y position of a row
+    public double getY(int row) {
+        return y0 + row * spacing;
+    }
+
+    //Returns the x component of the field at a point
+    public float getEx(int col, int row) {
+        return ex[row * cols + col];
+    }
+
+    //Returns the y component of the field at a point
+    public float getEy(int col, int row) {
+        return ey[row * cols + col];
+    }
+
+    //Returns the distance between neighbouring points
+    public double getSpacing() {
+        return spacing;
+    }
+
+    //Returns the number of points across
+    public int getCols() {
+        return cols;
+    }
+
+    //Returns the number of points down
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This interface defines how a Field Line is advanced along the direction of
+    the field. An integrator always knows the field at its current point, so
+    the caller can color the line without evaluating the field again.
+*/
+
+package emfields.EMPhysics;
+
+public interface FieldIntegrator {
+
+    //Moves the integrator to the start of a line and evaluates the field there
+    public boolean start(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            double xDim, double yDim);
+
+    //Advances the point along (sign 1) or against (sign -1) the field
+    public boolean step(FieldKernel kernel, ChargeStore charges, boolean pointCharge,
+            int sign);
+
+    //Returns the x dimension of the current point
+    public double getX();
+
+    //Returns the y dimension of the current point
+    public double getY();
+
+    //Returns the x-component of the unit field direction at the current point
+    public double getXDir();
+
+    //Returns the y-component of the unit field direction at the current point
+    public double getYDir();
+
+    //Returns the field magnitude at the current point
+    public double getMag();
+}
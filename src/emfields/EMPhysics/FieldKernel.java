@@ -0,0 +1,306 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class evaluates the electric field and the potential of a ChargeStore at
+    a point. The results are kept in the kernel itself so that a query never
+    allocates; every object which traces or samples the field owns its own
+    kernel.
+
+    Above a set number of charges the sums are taken from a ChargeTree, whose
+    opening angle trades accuracy for speed.
+*/
+
+package emfields.EMPhysics;
+
+public class FieldKernel {
+
+    //Acts as the electromagnetic constant
+    public static final double K = 1000;
+
+    //Extra scale applied to the field of a point charge
+    public static final double POINT_SCALE = 500;
+
+    //Number of charges above which a ChargeTree is used. The direct sum for
+    //    point charges has no log and their expansion has more terms, so they
+    //    only use the tree above POINT_TREE_FACTOR times as many.
+    public static final int TREE_THRESHOLD = 256;
+    public static final int POINT_TREE_FACTOR = 32;
+
+    //Results of the last evaluation
+    private double ex;
+    private double ey;
+    private double pot;
+    private double scale = K;   //Ratio of the field to the potential gradient
+
+    //Number of evaluations made with this kernel
+    private long evaluations = 0;
+
+    private int treeThreshold = TREE_THRESHOLD;
+    private double accuracy = ChargeTree.DEFAULT_THETA;    //Opening angle of the tree
+    private final double[] sums = new double[3];            //Sums found by the tree
+
+    //Calculates the field and the potential in one pass over the charges
+    public void evaluate(ChargeStore charges, double xDim, double yDim, boolean pointCharge) {
+        if (useTree(charges, pointCharge)) {
+            evaluateTree(charges, xDim, yDim, pointCharge);
+            return;
+        }
+        final double[] cx = charges.x;
+        final double[] cy = charges.y;
+        final double[] cq = charges.q;
+        final int n = charges.size;
+        double sumX = 0;
+        double sumY = 0;
+        double sumPot = 0;
+
+        if (pointCharge) {
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                double inv = 1 / Math.sqrt(xDif * xDif + yDif * yDif);
+                double mag = cq[i] * inv * inv * inv;
+                sumX += mag * xDif;
+                sumY += mag * yDif;
+                sumPot += cq[i] * inv;
+            }
+            ex = -K * POINT_SCALE * sumX;
+            ey = -K * POINT_SCALE * sumY;
+            scale = POINT_SCALE;
+            pot = -K * sumPot;
+        } else {
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                double distSq = xDif * xDif + yDif * yDif;
+                double mag = cq[i] / distSq;
+                sumX += mag * xDif;
+                sumY += mag * yDif;
+                sumPot += cq[i] * Math.log(distSq);
+            }
+            ex = -K * sumX;
+            ey = -K * sumY;
+            scale = K;
+            pot = .5 * sumPot;
+        }
+        evaluations++;
+    }
+
+    //Calculates only the field, skipping the potential
+    public void evaluateField(ChargeStore charges, double xDim, double yDim, boolean pointCharge) {
+        if (useTree(charges, pointCharge)) {
+            evaluateTree(charges, xDim, yDim, pointCharge);
+            return;
+        }
+        final double[] cx = charges.x;
+        final double[] cy = charges.y;
+        final double[] cq = charges.q;
+        final int n = charges.size;
+        double sumX = 0;
+        double sumY = 0;
+
+        if (pointCharge) {
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                double inv = 1 / Math.sqrt(xDif * xDif + yDif * yDif);
+                double mag = cq[i] * inv * inv * inv;
+                sumX += mag * xDif;
+                sumY += mag * yDif;
+            }
+            ex = -K * POINT_SCALE * sumX;
+            ey = -K * POINT_SCALE * sumY;
+            scale = POINT_SCALE;
+        } else {
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                double mag = cq[i] / (xDif * xDif + yDif * yDif);
+                sumX += mag * xDif;
+                sumY += mag * yDif;
+            }
+            ex = -K * sumX;
+            ey = -K * sumY;
+            scale = K;
+        }
+        evaluations++;
+    }
+
+    //Checks if there are enough charges for the tree to be faster
+    private boolean useTree(ChargeStore charges, boolean pointCharge) {
+        return charges.size > (pointCharge ? (long) POINT_TREE_FACTOR * treeThreshold : treeThreshold);
+    }
+
+    //Calculates the field and the potential from the tree over the charges
+    private void evaluateTree(ChargeStore charges, double xDim, double yDim, boolean pointCharge) {
+        charges.getTree().field(xDim, yDim, pointCharge, accuracy, sums);
+        if (pointCharge) {
+            ex = -K * POINT_SCALE * sums[0];
+            ey = -K * POINT_SCALE * sums[1];
+            scale = POINT_SCALE;
+            pot = -K * sums[2];
+        } else {
+            ex = -K * sums[0];
+            ey = -K * sums[1];
+            scale = K;
+            pot = .5 * sums[2];
+        }
+        evaluations++;
+    }
+
+    //Adds the field of a single charge at a point, times the weight, to the
+    //    field of the last evaluation. A weight of -1 takes the charge away.
+    public void accumulate(double cx, double cy, double charge, double xDim, double yDim,
+            double weight, boolean pointCharge) {
+        double xDif = cx - xDim;
+        double yDif = cy - yDim;
+        double distSq = xDif * xDif + yDif * yDif;
+        double mag;
+        if (pointCharge) {
+            mag = -K * POINT_SCALE * weight * charge / (distSq * Math.sqrt(distSq));
+        } else {
+            mag = -K * weight * charge / distSq;
+        }
+        ex += mag * xDif;
+        ey += mag * yDif;
+    }
+
+    //Calculates and returns only the potential
+    public double potential(ChargeStore charges, double xDim, double yDim, boolean pointCharge) {
+        if (useTree(charges, pointCharge)) {
+            double sumPot = charges.getTree().potential(xDim, yDim, pointCharge, accuracy);
+            pot = pointCharge ? -K * sumPot : .5 * sumPot;
+            evaluations++;
+            return pot;
+        }
+        final double[] cx = charges.x;
+        final double[] cy = charges.y;
+        final double[] cq = charges.q;
+        final int n = charges.size;
+        double sumPot = 0;
+
+        if (pointCharge) {
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                sumPot += cq[i] / Math.sqrt(xDif * xDif + yDif * yDif);
+            }
+            pot = -K * sumPot;
+        } else {
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                sumPot += cq[i] * Math.log(xDif * xDif + yDif * yDif);
+            }
+            pot = .5 * sumPot;
+        }
+        evaluations++;
+        return pot;
+    }
+
+    //Calculates the flux of the charges through the segment from the first
+    //    point to the second, counted along the segment direction turned by
+    //    a quarter turn from x towards y
+    public double segmentFlux(ChargeStore charges, double x1, double y1,
+            double x2, double y2, boolean pointCharge) {
+        double flux = 0;
+        for (int i = 0; i < charges.size; i++) {
+            flux += chargeFlux(charges.x[i], charges.y[i], charges.q[i], x1, y1, x2, y2, pointCharge);
+        }
+        evaluations++;
+        return flux;
+    }
+
+    //Calculates the flux of a single charge through a segment. Measured from
+    //    the foot of the perpendicular from the charge, the segment runs from
+    //    t1 to t2 at a distance d, so the flux of a line charge is K * q times
+    //    the angle it subtends, atan(t2 / d) - atan(t1 / d), and the flux of a
+    //    point charge integrates to the same form with t / sqrt(d^2 + t^2)
+    public static double chargeFlux(double cx, double cy, double q, double x1, double y1,
+            double x2, double y2, boolean pointCharge) {
+        double xSeg = x2 - x1;
+        double ySeg = y2 - y1;
+        double length = Math.sqrt(xSeg * xSeg + ySeg * ySeg);
+        if (length == 0) {
+            return 0;
+        }
+        double xDir = xSeg / length;
+        double yDir = ySeg / length;
+        double xDif = x1 - cx;
+        double yDif = y1 - cy;
+        double d = yDif * xDir - xDif * yDir;
+        if (Math.abs(d) < 1e-9) {
+            return 0;
+        }
+        double t1 = xDif * xDir + yDif * yDir;
+        double t2 = t1 + length;
+        if (pointCharge) {
+            return K * POINT_SCALE * q / d
+                    * (t2 / Math.sqrt(d * d + t2 * t2) - t1 / Math.sqrt(d * d + t1 * t1));
+        } else {
+            return K * q * (Math.atan(t2 / d) - Math.atan(t1 / d));
+        }
+    }
+
+    //Sets the opening angle of the tree; smaller angles are more accurate
+    public void setAccuracy(double theta) {
+        if (!(theta > 0 && theta < 1)) {
+            throw new IllegalArgumentException("Opening angle must be between 0 and 1");
+        }
+        accuracy = theta;
+    }
+
+    //Returns the opening angle of the tree
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    //Sets the number of charges above which the tree is used
+    public void setTreeThreshold(int threshold) {
+        treeThreshold = threshold;
+    }
+
+    //Returns the number of charges above which the tree is used
+    public int getTreeThreshold() {
+        return treeThreshold;
+    }
+
+    //Returns the x-component of the field from the last evaluation
+    public double getEx() {
+        return ex;
+    }
+
+    //Returns the y-component of the field from the last evaluation
+    public double getEy() {
+        return ey;
+    }
+
+    //Returns the x-component of the potential gradient from the last evaluation
+    public double getGradX() {
+        return ex / scale;
+    }
+
+    //Returns the y-component of the potential gradient from the last evaluation
+    public double getGradY() {
+        return ey / scale;
+    }
+
+    //Returns the potential from the last evaluation
+    public double getPot() {
+        return pot;
+    }
+
+    //Returns the magnitude of the field from the last evaluation
+    public double getMag() {
+        return Math.sqrt(ex * ex + ey * ey);
+    }
+
+    //Returns the number of evaluations made with this kernel
+    public long getEvaluations() {
+        return evaluations;
+    }
+
+    //Resets the evaluation counter
+    public void resetEvaluations() {
+        evaluations = 0;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class evaluates the potential of a fixed set of charges at many points,
+    using the same formulas as FieldKernel.potential. For line charges with
+    whole number charges, the sum of q ln r is taken as the log of a product
+    of powers of r, so each point costs two logs instead of one per charge.
+    The products are rescaled by powers of two as they grow so they never
+    overflow. Above the tree threshold of FieldKernel the ChargeTree of the
+    store is used instead.
+*/
+
+package emfields.EMPhysics;
+
+import java.util.Arrays;
+
+public class PotentialSampler {
+
+    //Largest charge raised to a power in the product form
+    private static final int MAX_POWER = 16;
+
+    //Bounds at which the running products are rescaled
+    private static final double HIGH = 0x1p400;
+    private static final double LOW = 0x1p-400;
+    private static final double LN2 = Math.log(2);
+
+    //Copy of the charges
+    private final double[] cx;
+    private final double[] cy;
+    private final double[] cq;
+    private final int[] powers;     //Whole number charges, for the product form
+    private final int n;
+
+    private final boolean pointCharge;  //Flags if charges are point charges
+    private final boolean product;      //Flags if the product form is used
+    private final double offset;        //Added to every line charge potential
+    private final ChargeTree tree;      //Tree over the charges, if there are many
+
+    //Initializes the sampler for the charges, with line charge potentials
+    //    measured from the given reference distance
+    public PotentialSampler(ChargeStore charges, boolean pointCharge, double reference) {
+        n = charges.size;
+        cx = Arrays.copyOf(charges.x, n);
+        cy = Arrays.copyOf(charges.y, n);
+        cq = Arrays.copyOf(charges.q, n);
+        powers = new int[n];
+        this.pointCharge = pointCharge;
+
+        boolean whole = true;
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            whole &= cq[i] == Math.rint(cq[i]) && Math.abs(cq[i]) <= MAX_POWER;
+            powers[i] = (int) cq[i];
+            total += cq[i];
+        }
+        product = whole && !pointCharge;
+        tree = n > (pointCharge ? FieldKernel.POINT_TREE_FACTOR : 1) * FieldKernel.TREE_THRESHOLD
+                ? charges.getTree() : null;
+        offset = pointCharge ? 0 : -total * Math.log(reference);
+    }
+
+    //Returns the potential at a point
+    public double sample(double xDim, double yDim) {
+        if (tree != null) {
+            double sumPot = tree.potential(xDim, yDim, pointCharge, ChargeTree.DEFAULT_THETA);
+            return pointCharge ? -FieldKernel.K * sumPot : .5 * sumPot + offset;
+        }
+        if (pointCharge) {
+            double sumPot = 0;
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                sumPot += cq[i] / Math.sqrt(xDif * xDif + yDif * yDif);
+            }
+            return -FieldKernel.K * sumPot;
+        }
+        if (!product) {
+            double sumPot = 0;
+            for (int i = 0; i < n; i++) {
+                double xDif = cx[i] - xDim;
+                double yDif = cy[i] - yDim;
+                sumPot += cq[i] * Math.log(xDif * xDif + yDif * yDif);
+            }
+            return .5 * sumPot + offset;
+        }
+
+        //Keeps the positive and negative charges in separate products
+        double num = 1;
+        double den = 1;
+        int numExp = 0;
+        int denExp = 0;
+        for (int i = 0; i < n; i++) {
+            double xDif = cx[i] - xDim;
+            double yDif = cy[i] - yDim;
+            double distSq = xDif * xDif + yDif * yDif;
+            int power = powers[i];
+            if (power > 0) {
+                for (int k = 0; k < power; k++) {
+                    num *= distSq;
+                }
+                if (num > HIGH || num < LOW) {
+                    int exp = Math.getExponent(num);
+                    num = Math.scalb(num, -exp);
+                    numExp += exp;
+                }
+            } else if (power < 0) {
+                for (int k = 0; k > power; k--) {
+                    den *= distSq;
+                }
+                if (den > HIGH || den < LOW) {
+                    int exp = Math.getExponent(den);
+                    den = Math.scalb(den, -exp);
+                    denExp += exp;
+                }
+            }
+        }
+        return .5 * (Math.log(num) - Math.log(den) + (numExp - denExp) * LN2) + offset;
+    }
+
+    //Returns whether the charges are point charges
+    public boolean isPointCharge() {
+        return pointCharge;
+    }
+}
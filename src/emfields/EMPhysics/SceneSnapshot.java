@@ -0,0 +1,87 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class holds a copy of everything the objects need to be computed: the
+    charges, the size of the panel and its menus and the point charge flag. Worker threads
+    only ever read a snapshot, so the panel is free to keep changing its own
+    charges. A snapshot is cancelled once a newer one replaces it. A preview
+    snapshot asks for quick, coarse results while a rod is being dragged.
+*/
+
+package emfields.EMPhysics;
+
+public class SceneSnapshot {
+
+    private final ChargeStore charges;  //Copy of the charges in the scene
+    private final int width;            //Width of the panel
+    private final int height;           //Height of the panel
+    private final int top;              //Height of the menu above the scene
+    private final int bottom;           //Height of the menu below the scene
+    private final boolean pointCharge;  //Flags if charges are point charges
+    private final boolean preview;      //Flags if coarse results are enough
+
+    private volatile boolean cancelled = false; //Flags if a newer scene exists
+
+    //Initializes the snapshot of a panel without menus, copying the charges
+    public SceneSnapshot(ChargeStore charges, int width, int height, boolean pointCharge) {
+        this(charges, width, height, 0, 0, pointCharge, false);
+    }
+
+    //Initializes the snapshot, copying the charges, for a preview or for full
+    //    precision
+    public SceneSnapshot(ChargeStore charges, int width, int height, int top, int bottom,
+            boolean pointCharge, boolean preview) {
+        this.charges = charges.copy();
+        this.width = width;
+        this.height = height;
+        this.top = top;
+        this.bottom = bottom;
+        this.pointCharge = pointCharge;
+        this.preview = preview;
+    }
+
+    //Returns the copy of the charges
+    public ChargeStore getCharges() {
+        return charges;
+    }
+
+    //Returns the width of the panel
+    public int getWidth() {
+        return width;
+    }
+
+    //Returns the height of the panel
+    public int getHeight() {
+        return height;
+    }
+
+    //Returns the height of the menu above the scene
+    public int getTop() {
+        return top;
+    }
+
+    //Returns the height of the menu below the scene
+    public int getBottom() {
+        return bottom;
+    }
+
+    //Returns whether the charges are point charges
+    public boolean isPointCharge() {
+        return pointCharge;
+    }
+
+    //Returns whether coarse results are enough for the snapshot
+    public boolean isPreview() {
+        return preview;
+    }
+
+    //Marks the snapshot as replaced, so work on it can stop early
+    public void cancel() {
+        cancelled = true;
+    }
+
+    //Returns whether the snapshot has been replaced
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
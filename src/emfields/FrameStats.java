@@ -0,0 +1,272 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class measures the work behind each frame, to find which objects make
+    the display stutter. The wall time, field evaluations, steps and bytes
+    allocated by every compute and paint are added up by object type over the
+    last second, and the times of recent frames are kept for percentiles.
+    Every measurement is also committed as a JFR event, so a session can be
+    recorded with -XX:StartFlightRecording and studied afterwards.
+*/
+
+package emfields;
+
+import emfields.EMObjects.EMObj;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+public class FrameStats {
+
+    private static final int FRAMES = 240;          //Recent frames kept for the percentiles
+    private static final long WINDOW = 1000000000L; //Nanoseconds added up into the totals shown
+
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BOX = new Color(255, 255, 255, 215);
+
+    //Measures the bytes allocated by a thread, or null if the JVM cannot
+    private static final com.sun.management.ThreadMXBean THREADS = findThreads();
+
+    private TreeMap<String, Totals> current = new TreeMap<>();  //Totals of the window being added up
+    private TreeMap<String, Totals> shown = new TreeMap<>();    //Totals of the last busy window
+    private long windowStart = System.nanoTime();
+
+    private final long[] frameTimes = new long[FRAMES];    //Ring of the latest frame times
+    private int frames = 0;                                 //Frames recorded in total
+
+    private static com.sun.management.ThreadMXBean findThreads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counted = (com.sun.management.ThreadMXBean) threads;
+            if (counted.isThreadAllocatedMemorySupported()) {
+                counted.setThreadAllocatedMemoryEnabled(true);
+                return counted;
+            }
+        }
+        return null;
+    }
+
+    //Returns the bytes allocated so far by the current thread, or 0 if unknown
+    public static long allocatedBytes() {
+        return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    //Records a compute of an object which began at the given time and count
+    //    of allocated bytes, on the current thread
+    public void computed(EMObj object, long start, long bytes) {
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytes;
+        long evaluations = object.getEvaluations();
+        long steps = object.getSteps();
+        synchronized (this) {
+            Totals totals = totals(object.getType());
+            totals.computes++;
+            totals.computeNanos += nanos;
+            totals.computeBytes += allocated;
+            totals.evaluations += evaluations;
+            totals.steps += steps;
+        }
+
+        ComputeEvent event = new ComputeEvent();
+        if (event.shouldCommit()) {
+            event.type = object.getType();
+            event.wallTime = nanos;
+            event.evaluations = evaluations;
+            event.steps = steps;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+    //Records a paint of an object which began at the given time and count of
+    //    allocated bytes, on the current thread
+    public void painted(EMObj object, long start, long bytes) {
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - bytes;
+        synchronized (this) {
+            Totals totals = totals(object.getType());
+            totals.paints++;
+            totals.paintNanos += nanos;
+            totals.paintBytes += allocated;
+        }
+
+        PaintEvent event = new PaintEvent();
+        if (event.shouldCommit()) {
+            event.type = object.getType();
+            event.wallTime = nanos;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+    //Records a whole frame, and starts a new window of totals once the
+    //    current one has run its length. Windows without any work are not
+    //    shown, so the totals of the last burst of work stay on screen.
+    public void frame(long start, long bytes) {
+        long end = System.nanoTime();
+        long allocated = allocatedBytes() - bytes;
+        synchronized (this) {
+            frameTimes[frames % FRAMES] = end - start;
+            frames++;
+            if (end - windowStart >= WINDOW) {
+                if (!current.isEmpty()) {
+                    shown = current;
+                    current = new TreeMap<>();
+                }
+                windowStart = end;
+            }
+        }
+
+        FrameEvent event = new FrameEvent();
+        if (event.shouldCommit()) {
+            event.wallTime = end - start;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+
+    //Returns the frame time in milliseconds below which the given fraction of
+    //    the recent frames fall
+    public synchronized double percentile(double fraction) {
+        int count = Math.min(frames, FRAMES);
+        if (count == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(frameTimes, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(fraction * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+
+    //Draws the frame percentiles and the totals of the last window in a box
+    //    with its top left corner at the point
+    public void paint(Graphics g, int x, int y) {
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(String.format("frame ms  p50 %.2f  p95 %.2f  p99 %.2f  max %.2f",
+                percentile(.5), percentile(.95), percentile(.99), percentile(1)));
+        lines.add(String.format("%-14s %6s %8s %10s %9s %8s %7s %8s %8s",
+                "last busy sec", "comp", "comp ms", "evals", "steps", "comp KB",
+                "paints", "paint ms", "paint KB"));
+        synchronized (this) {
+            for (Map.Entry<String, Totals> entry : shown.entrySet()) {
+                Totals t = entry.getValue();
+                lines.add(String.format("%-14s %6d %8.2f %10d %9d %8d %7d %8.2f %8d",
+                        entry.getKey(), t.computes, t.computeNanos / 1e6, t.evaluations,
+                        t.steps, t.computeBytes / 1024, t.paints, t.paintNanos / 1e6,
+                        t.paintBytes / 1024));
+            }
+        }
+
+        g.setFont(FONT);
+        FontMetrics metrics = g.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        int lineHeight = metrics.getHeight();
+        g.setColor(BOX);
+        g.fillRect(x, y, width + 12, lines.size() * lineHeight + 8);
+        g.setColor(Color.black);
+        g.drawRect(x, y, width + 12, lines.size() * lineHeight + 8);
+        for (int i = 0; i < lines.size(); i++) {
+            g.drawString(lines.get(i), x + 6, y + 4 + i * lineHeight + metrics.getAscent());
+        }
+    }
+
+    //Returns the totals of a type in the current window, creating them if needed
+    private Totals totals(String type) {
+        Totals totals = current.get(type);
+        if (totals == null) {
+            totals = new Totals();
+            current.put(type, totals);
+        }
+        return totals;
+    }
+
+    //Work done for one type of object within a window
+    private static class Totals {
+
+        private long computes;
+        private long computeNanos;
+        private long computeBytes;
+        private long evaluations;
+        private long steps;
+        private long paints;
+        private long paintNanos;
+        private long paintBytes;
+    }
+
+    @Name("emfields.Compute")
+    @Label("Object Compute")
+    @Category("EMFields")
+    @StackTrace(false)
+    @Description("Calculation of an object for a scene, on a worker thread")
+    static class ComputeEvent extends Event {
+
+        @Label("Type")
+        String type;
+
+        @Label("Wall Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long wallTime;
+
+        @Label("Field Evaluations")
+        long evaluations;
+
+        @Label("Steps")
+        long steps;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("emfields.Paint")
+    @Label("Object Paint")
+    @Category("EMFields")
+    @StackTrace(false)
+    @Description("Drawing of an object into the cached overlay")
+    static class PaintEvent extends Event {
+
+        @Label("Type")
+        String type;
+
+        @Label("Wall Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long wallTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+    @Name("emfields.Frame")
+    @Label("Frame")
+    @Category("EMFields")
+    @StackTrace(false)
+    @Description("Painting of the whole panel")
+    static class FrameEvent extends Event {
+
+        @Label("Wall Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long wallTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+}
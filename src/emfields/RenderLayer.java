@@ -0,0 +1,90 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class holds one cached layer of the EMPanel display. The layer is drawn
+    into an offscreen image only when it has been invalidated, and otherwise the
+    last image is copied to the screen. The image follows the scale of the
+    screen it is drawn to, so cached text and lines stay sharp on high density
+    displays.
+*/
+
+package emfields;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+public abstract class RenderLayer {
+
+    private final boolean opaque;   //Flags if the layer covers its whole area
+    private BufferedImage image;    //Last drawing of the layer
+    private double scale = 1;       //Device scale the image was drawn for
+    private boolean valid = false;  //Flags if the image is up to date
+    private int renders = 0;        //Number of times the layer has been drawn
+
+    //Initializes a layer, which is transparent unless marked opaque
+    public RenderLayer(boolean opaque) {
+        this.opaque = opaque;
+    }
+
+    //Draws the contents of the layer in layer coordinates
+    protected abstract void render(Graphics2D g);
+
+    //Marks the layer to be drawn again on the next paint
+    public void invalidate() {
+        valid = false;
+    }
+
+    //Returns whether the cached image is up to date
+    public boolean isValid() {
+        return valid;
+    }
+
+    //Returns the number of times the layer has been drawn
+    public int getRenders() {
+        return renders;
+    }
+
+    //Copies the layer to the screen at the given position, drawing it first if needed
+    public void paint(Graphics2D g, int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        AffineTransform device = g.getTransform();
+        double deviceScale = Math.max(Math.abs(device.getScaleX()), 1);
+        int imgWidth = (int) Math.ceil(width * deviceScale);
+        int imgHeight = (int) Math.ceil(height * deviceScale);
+
+        if (image == null || image.getWidth() != imgWidth
+                || image.getHeight() != imgHeight || scale != deviceScale) {
+            image = new BufferedImage(imgWidth, imgHeight, opaque
+                    ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            scale = deviceScale;
+            valid = false;
+        }
+
+        if (!valid) {
+            Graphics2D ig = image.createGraphics();
+            if (!opaque) {
+                ig.setComposite(AlphaComposite.Clear);
+                ig.fillRect(0, 0, imgWidth, imgHeight);
+                ig.setComposite(AlphaComposite.SrcOver);
+            }
+            Object text = g.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
+            if (text != null) {
+                ig.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, text);
+            }
+            ig.scale(scale, scale);
+            ig.setFont(g.getFont());
+            ig.setColor(g.getColor());
+            render(ig);
+            ig.dispose();
+            valid = true;
+            renders++;
+        }
+
+        g.drawImage(image, x, y, width, height, null);
+    }
+}
@@ -0,0 +1,555 @@
+/*
+Developed for use by the LeTourneau University Physics Department
+
+This class describes a scene which can be saved and rendered without the
+    EMPanel. Scenes are kept in a compact binary form, which is read through a
+    memory mapping straight into packed arrays, or in a text form for editing
+    by hand. The text form has one entry per line, in panel coordinates with y
+    pointing down:
+
+        # comment
+        size 1000 800           image size
+        pointcharges            use point charges instead of line charges
+        grid                    draw the grid
+        rod 3 400 300           rod of charge 3 at (400, 300)
+        vector 500 300          field vector
+        fieldline 500 320       field line through a point
+        equiline 450 250        equipotential line through a point
+        gauss 560 360 640 360 640 440 560 440   gaussian surface corners
+        lattice 25              vector grid with the given spacing
+        potentialmap            shading by potential
+        contours 20             evenly spaced equipotentials
+        streamlines             evenly spaced field lines
+
+    The binary form is little endian. A header of ten ints holds the magic
+    number, the format version, the width and height, the flags, the lattice
+    spacing, the contour levels, the number of rods, the number of objects and
+    the number of ints in the object records. The x, y and charge arrays of
+    the rods follow as doubles, then each object as its kind, the number of
+    coordinates and the coordinates.
+*/
+
+package emfields;
+
+import emfields.EMObjects.ContourSet;
+import emfields.EMObjects.EMObj;
+import emfields.EMObjects.EMVec;
+import emfields.EMObjects.EquiLine;
+import emfields.EMObjects.FieldLine;
+import emfields.EMObjects.GaussSurface;
+import emfields.EMObjects.PolylineCache;
+import emfields.EMObjects.VectorLattice;
+import emfields.EMPhysics.ChargeStore;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SceneFile {
+
+    //Kinds of placed objects
+    public static final int VECTOR = 0;
+    public static final int FIELD_LINE = 1;
+    public static final int EQUI_LINE = 2;
+    public static final int GAUSS = 3;
+
+    //Keywords of the placed objects, by kind
+    private static final String[] KINDS = {"vector", "fieldline", "equiline", "gauss"};
+
+    //Start and version of the binary form
+    private static final int MAGIC = 0x53464D45;    //"EMFS" in little endian
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;           //Bytes before the rods
+
+    //Flags of the binary form
+    private static final int POINT_CHARGE = 1;
+    private static final int GRID = 2;
+    private static final int POTENTIAL_MAP = 4;
+    private static final int STREAMLINES = 8;
+
+    //Settings of the scene
+    public int width = 1000;
+    public int height = 1000;
+    public boolean pointCharge = false;
+    public boolean grid = false;
+    public int latticeSpacing = 0;      //Spacing of the vector grid, 0 when hidden
+    public boolean potentialMap = false;
+    public int contourLevels = 0;       //Number of contours, 0 when hidden
+    public boolean streamlines = false;
+
+    //Placed rods as packed arrays, only the first rodCount entries are valid
+    private double[] rodX = new double[16];
+    private double[] rodY = new double[16];
+    private double[] rodQ = new double[16];
+    private int rodCount = 0;
+
+    //Placed objects, as {kind, x, y, x, y, ...}
+    public final ArrayList<int[]> objects = new ArrayList<>();
+
+    //Reads a scene in either form, telling them apart by the magic number
+    public static SceneFile read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(start);
+            if (!start.hasRemaining() && start.getInt(0) == MAGIC) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Scene file is too large");
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return readBinary(buffer.order(ByteOrder.LITTLE_ENDIAN));
+            }
+        }
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    //Reads a scene from the binary form, copying the rods in bulk. It is checked
+    //    as the text form is, naming the byte of any error.
+    private static SceneFile readBinary(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER) {
+            throw new IOException("Scene file is truncated");
+        }
+        int version = buffer.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported scene version " + version);
+        }
+        SceneFile scene = new SceneFile();
+        scene.width = buffer.getInt(8);
+        scene.height = buffer.getInt(12);
+        if (scene.width <= 0 || scene.height <= 0) {
+            throw corrupt(8, "Size must be positive");
+        }
+        int flags = buffer.getInt(16);
+        if ((flags & ~(POINT_CHARGE | GRID | POTENTIAL_MAP | STREAMLINES)) != 0) {
+            throw corrupt(16, "Unknown flags " + Integer.toHexString(flags));
+        }
+        scene.pointCharge = (flags & POINT_CHARGE) != 0;
+        scene.grid = (flags & GRID) != 0;
+        scene.potentialMap = (flags & POTENTIAL_MAP) != 0;
+        scene.streamlines = (flags & STREAMLINES) != 0;
+        scene.latticeSpacing = buffer.getInt(20);
+        if (scene.latticeSpacing != 0 && scene.latticeSpacing < VectorLattice.MIN_SPACING) {
+            throw corrupt(20, "Lattice spacing below " + VectorLattice.MIN_SPACING);
+        }
+        scene.contourLevels = buffer.getInt(24);
+        if (scene.contourLevels < 0) {
+            throw corrupt(24, "Contour levels must not be negative");
+        }
+        int rods = buffer.getInt(28);
+        if (rods < 0) {
+            throw corrupt(28, "Rod count must not be negative");
+        }
+        int objectCount = buffer.getInt(32);
+        if (objectCount < 0) {
+            throw corrupt(32, "Object count must not be negative");
+        }
+        int recordLength = buffer.getInt(36);
+        if (recordLength < 2L * objectCount) {
+            throw corrupt(36, "Record length " + recordLength + " is too short for "
+                    + objectCount + " objects");
+        }
+        long length = HEADER + 24L * rods + 4L * recordLength;
+        if (length != buffer.limit()) {
+            throw corrupt(HEADER, "Header gives " + length + " bytes but the file has "
+                    + buffer.limit());
+        }
+
+        scene.rodX = new double[rods];
+        scene.rodY = new double[rods];
+        scene.rodQ = new double[rods];
+        scene.rodCount = rods;
+        buffer.position(HEADER);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        doubles.get(scene.rodX).get(scene.rodY).get(scene.rodQ);
+        for (int i = 0; i < rods; i++) {
+            checkNumber(scene.rodX[i], HEADER + 8 * i);
+            checkNumber(scene.rodY[i], HEADER + 8 * (rods + i));
+            checkNumber(scene.rodQ[i], HEADER + 8 * (2 * rods + i));
+            if (scene.rodQ[i] == 0) {
+                throw corrupt(HEADER + 8 * (2 * rods + i), "Rod charge must not be 0");
+            }
+        }
+
+        int start = HEADER + 24 * rods;
+        buffer.position(start);
+        IntBuffer records = buffer.asIntBuffer();
+        for (int i = 0; i < objectCount; i++) {
+            int offset = start + 4 * records.position();
+            if (records.remaining() < 2) {
+                throw corrupt(offset, "Object " + i + " runs past the end of the file");
+            }
+            int kind = records.get();
+            int count = records.get();
+            if (kind < 0 || kind >= KINDS.length) {
+                throw corrupt(offset, "Unknown object kind " + kind);
+            }
+            if (kind == GAUSS ? count < 6 || count % 2 != 0 : count != 2) {
+                throw corrupt(offset + 4, kind == GAUSS
+                        ? "gauss needs at least three x y corners"
+                        : KINDS[kind] + " needs an x and a y");
+            }
+            if (count > records.remaining()) {
+                throw corrupt(offset + 4, KINDS[kind] + " runs past the end of the file");
+            }
+            int[] object = new int[count + 1];
+            object[0] = kind;
+            records.get(object, 1, count);
+            scene.objects.add(object);
+        }
+        if (records.hasRemaining()) {
+            throw corrupt(start + 4 * records.position(), records.remaining()
+                    + " ints left after the last object");
+        }
+        return scene;
+    }
+
+    //Checks a number of the binary form as the text form would
+    private static void checkNumber(double value, int offset) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw corrupt(offset, "Bad number " + value);
+        }
+    }
+
+    //Describes an error at a byte of the binary form
+    private static IOException corrupt(int offset, String message) {
+        return new IOException("Byte " + offset + ": " + message);
+    }
+
+    //Writes the scene in the binary form, straight from the packed arrays
+    public void write(Path path) throws IOException {
+        int recordLength = 0;
+        for (int[] object : objects) {
+            recordLength += object.length + 1;
+        }
+        long length = HEADER + 24L * rodCount + 4L * recordLength;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Scene is too large to save");
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height);
+        buffer.putInt((pointCharge ? POINT_CHARGE : 0) | (grid ? GRID : 0)
+                | (potentialMap ? POTENTIAL_MAP : 0) | (streamlines ? STREAMLINES : 0));
+        buffer.putInt(latticeSpacing).putInt(contourLevels);
+        buffer.putInt(rodCount).putInt(objects.size()).putInt(recordLength);
+        buffer.asDoubleBuffer().put(rodX, 0, rodCount).put(rodY, 0, rodCount).put(rodQ, 0, rodCount);
+        buffer.position(HEADER + 24 * rodCount);
+        IntBuffer records = buffer.asIntBuffer();
+        for (int[] object : objects) {
+            records.put(object[0]).put(object.length - 1).put(object, 1, object.length - 1);
+        }
+        buffer.position(0);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    //Writes the scene in the text form, which read and parse accept
+    public void writeText(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("size " + width + " " + height);
+            writer.newLine();
+            if (pointCharge) {
+                writer.write("pointcharges");
+                writer.newLine();
+            }
+            if (grid) {
+                writer.write("grid");
+                writer.newLine();
+            }
+            if (potentialMap) {
+                writer.write("potentialmap");
+                writer.newLine();
+            }
+            if (contourLevels > 0) {
+                writer.write("contours " + contourLevels);
+                writer.newLine();
+            }
+            if (streamlines) {
+                writer.write("streamlines");
+                writer.newLine();
+            }
+            if (latticeSpacing > 0) {
+                writer.write("lattice " + latticeSpacing);
+                writer.newLine();
+            }
+            for (int i = 0; i < rodCount; i++) {
+                writer.write("rod " + number(rodQ[i]) + " " + number(rodX[i]) + " " + number(rodY[i]));
+                writer.newLine();
+            }
+            for (int[] object : objects) {
+                StringBuilder line = new StringBuilder(KINDS[object[0]]);
+                for (int i = 1; i < object.length; i++) {
+                    line.append(' ').append(object[i]);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        }
+    }
+
+    //Formats a number for the text form, leaving off the fraction of whole numbers
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    //Reads a scene from text, naming the line of any error
+    public static SceneFile parse(BufferedReader reader) throws IOException {
+        SceneFile scene = new SceneFile();
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            String[] words = line.trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            try {
+                scene.parseEntry(words);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Line " + number + ": " + e.getMessage());
+            }
+        }
+        return scene;
+    }
+
+    //Adds one entry of the text form to the scene
+    private void parseEntry(String[] words) {
+        if (words[0].equals("rod")) {
+            if (words.length != 4) {
+                throw new IllegalArgumentException("rod takes 3 numbers");
+            }
+            double charge = parseNumber(words[1]);
+            if (charge == 0) {
+                throw new IllegalArgumentException("Rod charge must not be 0");
+            }
+            addRod(charge, parseNumber(words[2]), parseNumber(words[3]));
+            return;
+        }
+        int[] values = new int[words.length - 1];
+        for (int i = 1; i < words.length; i++) {
+            try {
+                values[i - 1] = Integer.parseInt(words[i]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad number '" + words[i] + "'");
+            }
+        }
+        switch (words[0]) {
+            case "size":
+                expect(words[0], values, 2);
+                if (values[0] <= 0 || values[1] <= 0) {
+                    throw new IllegalArgumentException("Size must be positive");
+                }
+                width = values[0];
+                height = values[1];
+                return;
+            case "pointcharges":
+                expect(words[0], values, 0);
+                pointCharge = true;
+                return;
+            case "grid":
+                expect(words[0], values, 0);
+                grid = true;
+                return;
+            case "lattice":
+                expectAtMost(words[0], values, 1);
+                latticeSpacing = values.length > 0 ? values[0] : VectorLattice.DEFAULT_SPACING;
+                if (latticeSpacing < VectorLattice.MIN_SPACING) {
+                    throw new IllegalArgumentException("Lattice spacing below "
+                            + VectorLattice.MIN_SPACING);
+                }
+                return;
+            case "potentialmap":
+                expect(words[0], values, 0);
+                potentialMap = true;
+                return;
+            case "streamlines":
+                expect(words[0], values, 0);
+                streamlines = true;
+                return;
+            case "contours":
+                expectAtMost(words[0], values, 1);
+                contourLevels = values.length > 0 ? values[0] : ContourSet.DEFAULT_LEVELS;
+                if (contourLevels <= 0) {
+                    throw new IllegalArgumentException("Contour levels must be positive");
+                }
+                return;
+        }
+        for (int kind = 0; kind < KINDS.length; kind++) {
+            if (KINDS[kind].equals(words[0])) {
+                if (kind == GAUSS ? values.length < 6 || values.length % 2 != 0
+                        : values.length != 2) {
+                    throw new IllegalArgumentException(kind == GAUSS
+                            ? "gauss needs at least three x y corners"
+                            : words[0] + " needs an x and a y");
+                }
+                int[] object = new int[values.length + 1];
+                object[0] = kind;
+                System.arraycopy(values, 0, object, 1, values.length);
+                objects.add(object);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Unknown entry '" + words[0] + "'");
+    }
+
+    private static double parseNumber(String word) {
+        try {
+            double value = Double.parseDouble(word);
+            if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+        }
+        throw new IllegalArgumentException("Bad number '" + word + "'");
+    }
+
+    private static void expect(String word, int[] values, int count) {
+        if (values.length != count) {
+            throw new IllegalArgumentException(word + " takes " + count + " numbers");
+        }
+    }
+
+    private static void expectAtMost(String word, int[] values, int count) {
+        if (values.length > count) {
+            throw new IllegalArgumentException(word + " takes at most " + count + " number");
+        }
+    }
+
+    //Adds a rod to the end of the scene
+    public void addRod(double charge, double xDim, double yDim) {
+        if (rodCount == rodX.length) {
+            int capacity = Math.max(16, 2 * rodCount);
+            rodX = Arrays.copyOf(rodX, capacity);
+            rodY = Arrays.copyOf(rodY, capacity);
+            rodQ = Arrays.copyOf(rodQ, capacity);
+        }
+        rodX[rodCount] = xDim;
+        rodY[rodCount] = yDim;
+        rodQ[rodCount] = charge;
+        rodCount++;
+    }
+
+    //Returns the number of rods
+    public int getRodCount() {
+        return rodCount;
+    }
+
+    //Returns the x coordinate of a rod
+    public double getRodX(int index) {
+        return rodX[index];
+    }
+
+    //Returns the y coordinate of a rod
+    public double getRodY(int index) {
+        return rodY[index];
+    }
+
+    //Returns the charge of a rod
+    public double getRodCharge(int index) {
+        return rodQ[index];
+    }
+
+    //Replaces the rods with the charges of a store
+    public void setCharges(ChargeStore charges) {
+        rodCount = charges.size();
+        rodX = new double[rodCount];
+        rodY = new double[rodCount];
+        rodQ = new double[rodCount];
+        charges.get(rodX, rodY, rodQ);
+    }
+
+    //Replaces every charge of a store with the rods
+    public void applyCharges(ChargeStore charges) {
+        charges.setAll(rodX, rodY, rodQ, rodCount);
+    }
+
+    //Returns a store holding the charges of the rods
+    public ChargeStore createCharges() {
+        ChargeStore charges = new ChargeStore();
+        applyCharges(charges);
+        return charges;
+    }
+
+    //Records a placed object, returning false for an object which is not
+    //    saved, such as an unfinished gaussian surface
+    public boolean addObject(EMObj object) {
+        int[] record;
+        if (object instanceof EMVec) {
+            EMVec vec = (EMVec) object;
+            record = new int[]{VECTOR, (int) vec.getxDim(), (int) vec.getyDim()};
+        } else if (object instanceof FieldLine) {
+            FieldLine line = (FieldLine) object;
+            record = new int[]{FIELD_LINE, (int) line.getxInit(), (int) line.getyInit()};
+        } else if (object instanceof EquiLine) {
+            EquiLine line = (EquiLine) object;
+            record = new int[]{EQUI_LINE, (int) line.getxInit(), (int) line.getyInit()};
+        } else if (object instanceof GaussSurface && ((GaussSurface) object).isFinished()) {
+            GaussSurface surface = (GaussSurface) object;
+            int corners = surface.size() - 2;
+            record = new int[1 + 2 * corners];
+            record[0] = GAUSS;
+            for (int i = 0; i < corners; i++) {
+                record[1 + 2 * i] = surface.getX(i);
+                record[2 + 2 * i] = surface.getY(i);
+            }
+        } else {
+            return false;
+        }
+        objects.add(record);
+        return true;
+    }
+
+    //Returns the placed objects for the charges, in the order they were listed,
+    //    with their traced lines kept in the given cache
+    public ArrayList<EMObj> createObjects(ChargeStore charges, PolylineCache cache) {
+        return createObjects(charges, cache, null);
+    }
+
+    //Returns the placed objects for the charges, with vectors reporting their
+    //    coordinates in terms of the panel
+    public ArrayList<EMObj> createObjects(ChargeStore charges, PolylineCache cache, EMPanel parent) {
+        ArrayList<EMObj> created = new ArrayList<>();
+        for (int[] object : objects) {
+            switch (object[0]) {
+                case VECTOR:
+                    created.add(new EMVec(object[1], object[2], charges, parent));
+                    break;
+                case FIELD_LINE:
+                    created.add(new FieldLine(object[1], object[2], cache));
+                    break;
+                case EQUI_LINE:
+                    created.add(new EquiLine(object[1], object[2], charges, cache));
+                    break;
+                case GAUSS:
+                    GaussSurface surface = new GaussSurface();
+                    for (int i = 1; i < object.length; i += 2) {
+                        surface.add(object[i], object[i + 1], charges);
+                    }
+                    surface.wrapUp(charges);
+                    created.add(surface);
+                    break;
+            }
+        }
+        return created;
+    }
+}